@@ -17,11 +17,17 @@
 package com.google.turbine.binder;
 
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Splitter;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.turbine.binder.CompUnitPreprocessor.PreprocessedCompUnit;
 import com.google.turbine.binder.Resolve.CanonicalResolver;
 import com.google.turbine.binder.bound.BoundClass;
@@ -44,6 +50,8 @@ import com.google.turbine.binder.lookup.CompoundScope;
 import com.google.turbine.binder.lookup.CompoundTopLevelIndex;
 import com.google.turbine.binder.lookup.ImportIndex;
 import com.google.turbine.binder.lookup.ImportScope;
+import com.google.turbine.binder.lookup.LookupKey;
+import com.google.turbine.binder.lookup.LookupResult;
 import com.google.turbine.binder.lookup.MemberImportIndex;
 import com.google.turbine.binder.lookup.Scope;
 import com.google.turbine.binder.lookup.SimpleTopLevelIndex;
@@ -56,11 +64,20 @@ import com.google.turbine.diag.TurbineError;
 import com.google.turbine.diag.TurbineError.ErrorKind;
 import com.google.turbine.model.Const;
 import com.google.turbine.model.TurbineFlag;
+import com.google.turbine.profile.Profiler;
 import com.google.turbine.tree.Tree;
 import com.google.turbine.tree.Tree.CompUnit;
 import com.google.turbine.tree.Tree.ModDecl;
 import com.google.turbine.type.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /** The entry point for analysis. */
 public class Binder {
@@ -71,8 +88,35 @@ public class Binder {
       ClassPath classpath,
       ClassPath bootclasspath,
       Optional<String> moduleVersion) {
+    return bind(
+        units,
+        classpath,
+        bootclasspath,
+        moduleVersion,
+        MoreExecutors.newDirectExecutorService(),
+        Profiler.disabled());
+  }
 
-    ImmutableList<PreprocessedCompUnit> preProcessedUnits = CompUnitPreprocessor.preprocess(units);
+  /**
+   * Binds symbols and types to the given compilation units, and records the time spent in each
+   * pass with the given {@link Profiler}.
+   *
+   * <p>The passes that bind each class independently are run in parallel using the given executor.
+   * Each pass completes before the next one starts, and the results are the same as binding
+   * serially.
+   */
+  public static BindingResult bind(
+      List<CompUnit> units,
+      ClassPath classpath,
+      ClassPath bootclasspath,
+      Optional<String> moduleVersion,
+      ExecutorService executor,
+      Profiler profiler) {
+
+    ImmutableList<PreprocessedCompUnit> preProcessedUnits;
+    try (Profiler.Span span = profiler.start("preprocess")) {
+      preProcessedUnits = CompUnitPreprocessor.preprocess(units);
+    }
 
     SimpleEnv<ClassSymbol, SourceBoundClass> ienv = bindSourceBoundClasses(preProcessedUnits);
 
@@ -84,40 +128,71 @@ public class Binder {
             bootclasspath.index(),
             classpath.index());
 
+    // The classpath doesn't change during the compilation, so remember the result of each lookup
+    // instead of probing both classpaths every time.
     CompoundEnv<ClassSymbol, BytecodeBoundClass> classPathEnv =
-        CompoundEnv.of(classpath.env()).append(bootclasspath.env());
+        CompoundEnv.of(classpath.env()).append(bootclasspath.env()).freeze();
 
     CompoundEnv<ModuleSymbol, ModuleInfo> classPathModuleEnv =
         CompoundEnv.of(classpath.moduleEnv()).append(bootclasspath.moduleEnv());
 
-    BindPackagesResult bindPackagesResult =
-        bindPackages(ienv, tli, preProcessedUnits, classPathEnv);
+    BindPackagesResult bindPackagesResult;
+    try (Profiler.Span span = profiler.start("bindPackages")) {
+      bindPackagesResult = bindPackages(ienv, tli, preProcessedUnits, classPathEnv);
+    }
 
     SimpleEnv<ClassSymbol, PackageSourceBoundClass> psenv = bindPackagesResult.classes;
     SimpleEnv<ModuleSymbol, PackageSourceBoundModule> modules = bindPackagesResult.modules;
 
-    Env<ClassSymbol, SourceHeaderBoundClass> henv = bindHierarchy(syms, psenv, classPathEnv);
-
-    Env<ClassSymbol, SourceTypeBoundClass> tenv =
-        bindTypes(
-            syms, henv, CompoundEnv.<ClassSymbol, HeaderBoundClass>of(classPathEnv).append(henv));
-
-    tenv =
-        constants(
-            syms, tenv, CompoundEnv.<ClassSymbol, TypeBoundClass>of(classPathEnv).append(tenv));
-    tenv =
-        disambiguateTypeAnnotations(
-            syms, tenv, CompoundEnv.<ClassSymbol, TypeBoundClass>of(classPathEnv).append(tenv));
-    tenv =
-        canonicalizeTypes(
-            syms, tenv, CompoundEnv.<ClassSymbol, TypeBoundClass>of(classPathEnv).append(tenv));
-
-    ImmutableList<ModuleInfo> boundModules =
-        bindModules(
-            modules,
-            CompoundEnv.<ClassSymbol, TypeBoundClass>of(classPathEnv).append(tenv),
-            classPathModuleEnv,
-            moduleVersion);
+    Env<ClassSymbol, SourceHeaderBoundClass> henv;
+    try (Profiler.Span span = profiler.start("bindHierarchy")) {
+      henv = bindHierarchy(syms, psenv, classPathEnv, executor);
+    }
+
+    Env<ClassSymbol, SourceTypeBoundClass> tenv;
+    try (Profiler.Span span = profiler.start("bindTypes")) {
+      tenv =
+          bindTypes(
+              syms,
+              henv,
+              CompoundEnv.<ClassSymbol, HeaderBoundClass>of(classPathEnv).append(henv),
+              executor);
+    }
+
+    try (Profiler.Span span = profiler.start("constants")) {
+      tenv =
+          constants(
+              syms,
+              tenv,
+              CompoundEnv.<ClassSymbol, TypeBoundClass>of(classPathEnv).append(tenv),
+              executor);
+    }
+    try (Profiler.Span span = profiler.start("disambiguateTypeAnnotations")) {
+      tenv =
+          disambiguateTypeAnnotations(
+              syms,
+              tenv,
+              CompoundEnv.<ClassSymbol, TypeBoundClass>of(classPathEnv).append(tenv),
+              executor);
+    }
+    try (Profiler.Span span = profiler.start("canonicalizeTypes")) {
+      tenv =
+          canonicalizeTypes(
+              syms,
+              tenv,
+              CompoundEnv.<ClassSymbol, TypeBoundClass>of(classPathEnv).append(tenv),
+              executor);
+    }
+
+    ImmutableList<ModuleInfo> boundModules;
+    try (Profiler.Span span = profiler.start("bindModules")) {
+      boundModules =
+          bindModules(
+              modules,
+              CompoundEnv.<ClassSymbol, TypeBoundClass>of(classPathEnv).append(tenv),
+              classPathModuleEnv,
+              moduleVersion);
+    }
 
     ImmutableMap.Builder<ClassSymbol, SourceTypeBoundClass> result = ImmutableMap.builder();
     for (ClassSymbol sym : syms) {
@@ -170,41 +245,163 @@ public class Binder {
       throw new IllegalArgumentException("Could not find java.lang on bootclasspath");
     }
     CompoundScope topLevel = CompoundScope.base(tli.scope()).append(javaLang);
-    for (PreprocessedCompUnit unit : units) {
-      ImmutableList<String> packagename =
-          ImmutableList.copyOf(Splitter.on('/').omitEmptyStrings().split(unit.packageName()));
-      Scope packageScope = tli.lookupPackage(packagename);
-      CanonicalSymbolResolver importResolver =
-          new CanonicalResolver(
-              packagename, CompoundEnv.<ClassSymbol, BoundClass>of(classPathEnv).append(ienv));
-      ImportScope importScope =
-          ImportIndex.create(unit.source(), importResolver, tli, unit.imports());
-      ImportScope wildImportScope = WildImportIndex.create(importResolver, tli, unit.imports());
-      MemberImportIndex memberImports =
-          new MemberImportIndex(unit.source(), importResolver, tli, unit.imports());
-      ImportScope scope =
-          ImportScope.fromScope(topLevel)
-              .append(wildImportScope)
-              .append(ImportScope.fromScope(packageScope))
-              .append(importScope);
+    CompoundEnv<ClassSymbol, BoundClass> resolverEnv =
+        CompoundEnv.<ClassSymbol, BoundClass>of(classPathEnv).append(ienv);
+    // Compilation units in the same package with the same imports (which is common in generated
+    // code) share their import scopes, so each import is only resolved once.
+    Map<String, PackageScopes> packages = new HashMap<>();
+    Map<ImportsKey, UnitScopes> shared = new HashMap<>();
+    for (final PreprocessedCompUnit unit : units) {
+      PackageScopes pkg = packages.get(unit.packageName());
+      if (pkg == null) {
+        pkg = new PackageScopes(unit.packageName(), tli, resolverEnv);
+        packages.put(unit.packageName(), pkg);
+      }
+      ImportsKey key = new ImportsKey(unit.packageName(), unit.imports());
+      UnitScopes scopes = shared.get(key);
+      if (scopes == null) {
+        scopes = UnitScopes.create(unit, pkg, topLevel, tli);
+        shared.put(key, scopes);
+      } else {
+        final PackageScopes unitPackage = pkg;
+        scopes =
+            scopes.withFallback(
+                Suppliers.memoize(
+                    new Supplier<UnitScopes>() {
+                      @Override
+                      public UnitScopes get() {
+                        return UnitScopes.create(unit, unitPackage, topLevel, tli);
+                      }
+                    }));
+      }
       if (unit.module().isPresent()) {
         ModDecl module = unit.module().get();
         modules.put(
             new ModuleSymbol(module.moduleName()),
-            new PackageSourceBoundModule(module, scope, memberImports, unit.source()));
+            new PackageSourceBoundModule(
+                module, scopes.scope, scopes.memberImports, unit.source()));
       }
       for (SourceBoundClass type : unit.types()) {
-        env.put(type.sym(), new PackageSourceBoundClass(type, scope, memberImports, unit.source()));
+        env.put(
+            type.sym(),
+            new PackageSourceBoundClass(type, scopes.scope, scopes.memberImports, unit.source()));
       }
     }
     return new BindPackagesResult(env.build(), modules.build());
   }
 
-  /** Binds the type hierarchy (superclasses and interfaces) for all classes in the compilation. */
+  /** The scope and import resolver for a package, shared by all compilation units in it. */
+  private static class PackageScopes {
+    final ImmutableList<String> packageName;
+    final Scope scope;
+    final CanonicalSymbolResolver importResolver;
+
+    PackageScopes(
+        String packageName, TopLevelIndex tli, CompoundEnv<ClassSymbol, BoundClass> env) {
+      this.packageName =
+          ImmutableList.copyOf(Splitter.on('/').omitEmptyStrings().split(packageName));
+      this.scope = tli.lookupPackage(this.packageName);
+      this.importResolver = new CanonicalResolver(this.packageName, env);
+    }
+  }
+
+  /** Identifies compilation units whose import scopes are interchangeable. */
+  private static final class ImportsKey {
+    final String packageName;
+    final ImmutableList<ImmutableList<Object>> imports;
+
+    ImportsKey(String packageName, ImmutableList<Tree.ImportDecl> decls) {
+      this.packageName = packageName;
+      ImmutableList.Builder<ImmutableList<Object>> imports = ImmutableList.builder();
+      for (Tree.ImportDecl decl : decls) {
+        imports.add(ImmutableList.<Object>of(decl.type(), decl.stat(), decl.wild()));
+      }
+      this.imports = imports.build();
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(packageName, imports);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof ImportsKey)) {
+        return false;
+      }
+      ImportsKey that = (ImportsKey) obj;
+      return packageName.equals(that.packageName) && imports.equals(that.imports);
+    }
+  }
+
+  /** The import scopes of a compilation unit. */
+  private static class UnitScopes {
+    final ImportScope scope;
+    final MemberImportIndex memberImports;
+
+    UnitScopes(ImportScope scope, MemberImportIndex memberImports) {
+      this.scope = scope;
+      this.memberImports = memberImports;
+    }
+
+    static UnitScopes create(
+        PreprocessedCompUnit unit, PackageScopes pkg, CompoundScope topLevel, TopLevelIndex tli) {
+      ImportScope importScope =
+          ImportIndex.create(unit.source(), pkg.importResolver, tli, unit.imports());
+      ImportScope wildImportScope = WildImportIndex.create(pkg.importResolver, tli, unit.imports());
+      MemberImportIndex memberImports =
+          new MemberImportIndex(unit.source(), pkg.importResolver, tli, unit.imports());
+      ImportScope scope =
+          ImportScope.fromScope(topLevel)
+              .append(wildImportScope)
+              .append(ImportScope.fromScope(pkg.scope))
+              .append(importScope);
+      return new UnitScopes(scope, memberImports);
+    }
+
+    /**
+     * Returns scopes for another compilation unit with the same package and imports, which share
+     * the imports already resolved for this one. Diagnostics are reported against the source file
+     * these scopes were created for, so failed lookups are retried against the other unit's own
+     * scopes.
+     */
+    UnitScopes withFallback(final Supplier<UnitScopes> local) {
+      final ImportScope shared = scope;
+      ImportScope scope =
+          new ImportScope() {
+            @Override
+            public LookupResult lookup(LookupKey lookupKey, ResolveFunction resolve) {
+              try {
+                return shared.lookup(lookupKey, resolve);
+              } catch (TurbineError e) {
+                return local.get().scope.lookup(lookupKey, resolve);
+              }
+            }
+          };
+      MemberImportIndex memberImports =
+          this.memberImports.withFallback(
+              new Supplier<MemberImportIndex>() {
+                @Override
+                public MemberImportIndex get() {
+                  return local.get().memberImports;
+                }
+              });
+      return new UnitScopes(scope, memberImports);
+    }
+  }
+
+  /**
+   * Binds the type hierarchy (superclasses and interfaces) for all classes in the compilation.
+   *
+   * <p>Classes are completed lazily, since binding a class's hierarchy requires the hierarchy of
+   * its supertypes. The completions are started in parallel, and dependencies that are already in
+   * flight on another thread are waited for.
+   */
   private static Env<ClassSymbol, SourceHeaderBoundClass> bindHierarchy(
-      Iterable<ClassSymbol> syms,
+      ImmutableSet<ClassSymbol> syms,
       final SimpleEnv<ClassSymbol, PackageSourceBoundClass> psenv,
-      CompoundEnv<ClassSymbol, BytecodeBoundClass> classPathEnv) {
+      CompoundEnv<ClassSymbol, BytecodeBoundClass> classPathEnv,
+      ExecutorService executor) {
     ImmutableMap.Builder<
             ClassSymbol, LazyEnv.Completer<ClassSymbol, HeaderBoundClass, SourceHeaderBoundClass>>
         completers = ImmutableMap.builder();
@@ -219,31 +416,87 @@ public class Binder {
             }
           });
     }
-    return new LazyEnv<>(completers.build(), classPathEnv);
+    LazyEnv<ClassSymbol, HeaderBoundClass, SourceHeaderBoundClass> lazy =
+        new LazyEnv<>(completers.build(), classPathEnv);
+    return bindAll(
+        syms,
+        executor,
+        new Function<ClassSymbol, SourceHeaderBoundClass>() {
+          @Override
+          public SourceHeaderBoundClass apply(ClassSymbol sym) {
+            return lazy.get(sym);
+          }
+        });
   }
 
   private static Env<ClassSymbol, SourceTypeBoundClass> bindTypes(
       ImmutableSet<ClassSymbol> syms,
       Env<ClassSymbol, SourceHeaderBoundClass> shenv,
-      Env<ClassSymbol, HeaderBoundClass> henv) {
-    SimpleEnv.Builder<ClassSymbol, SourceTypeBoundClass> builder = SimpleEnv.builder();
-    for (ClassSymbol sym : syms) {
-      builder.put(sym, TypeBinder.bind(henv, sym, shenv.get(sym)));
-    }
-    return builder.build();
+      Env<ClassSymbol, HeaderBoundClass> henv,
+      ExecutorService executor) {
+    return bindAll(
+        syms,
+        executor,
+        new Function<ClassSymbol, SourceTypeBoundClass>() {
+          @Override
+          public SourceTypeBoundClass apply(ClassSymbol sym) {
+            return TypeBinder.bind(henv, sym, shenv.get(sym));
+          }
+        });
   }
 
   private static Env<ClassSymbol, SourceTypeBoundClass> canonicalizeTypes(
       ImmutableSet<ClassSymbol> syms,
       Env<ClassSymbol, SourceTypeBoundClass> stenv,
-      Env<ClassSymbol, TypeBoundClass> tenv) {
-    SimpleEnv.Builder<ClassSymbol, SourceTypeBoundClass> builder = SimpleEnv.builder();
+      Env<ClassSymbol, TypeBoundClass> tenv,
+      ExecutorService executor) {
+    return bindAll(
+        syms,
+        executor,
+        new Function<ClassSymbol, SourceTypeBoundClass>() {
+          @Override
+          public SourceTypeBoundClass apply(ClassSymbol sym) {
+            return CanonicalTypeBinder.bind(sym, stenv.get(sym), tenv);
+          }
+        });
+  }
+
+  /**
+   * Binds each of the given classes with {@code binder}, using the given executor. Classes in the
+   * same pass may only depend on each other through a thread-safe {@link LazyEnv}. The results are
+   * returned in the iteration order of {@code syms}, and if binding fails the error for the first
+   * failing class in that order is thrown, so the result is the same as binding serially.
+   */
+  private static <V> SimpleEnv<ClassSymbol, V> bindAll(
+      ImmutableSet<ClassSymbol> syms, ExecutorService executor, Function<ClassSymbol, V> binder) {
+    List<Future<V>> futures = new ArrayList<>();
     for (ClassSymbol sym : syms) {
-      builder.put(sym, CanonicalTypeBinder.bind(sym, stenv.get(sym), tenv));
+      futures.add(
+          executor.submit(
+              new Callable<V>() {
+                @Override
+                public V call() {
+                  return binder.apply(sym);
+                }
+              }));
+    }
+    SimpleEnv.Builder<ClassSymbol, V> builder = SimpleEnv.builder();
+    int i = 0;
+    for (ClassSymbol sym : syms) {
+      builder.put(sym, getDone(futures.get(i++)));
     }
     return builder.build();
   }
 
+  private static <T> T getDone(Future<T> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new AssertionError(e.getCause());
+    }
+  }
+
   private static ImmutableList<ModuleInfo> bindModules(
       SimpleEnv<ModuleSymbol, PackageSourceBoundModule> modules,
       CompoundEnv<ClassSymbol, TypeBoundClass> env,
@@ -284,7 +537,8 @@ public class Binder {
   private static Env<ClassSymbol, SourceTypeBoundClass> constants(
       ImmutableSet<ClassSymbol> syms,
       Env<ClassSymbol, SourceTypeBoundClass> env,
-      CompoundEnv<ClassSymbol, TypeBoundClass> baseEnv) {
+      CompoundEnv<ClassSymbol, TypeBoundClass> baseEnv,
+      ExecutorService executor) {
 
     // Prepare to lazily evaluate constant fields in each compilation unit.
     // The laziness is necessary since constant fields can reference other
@@ -328,11 +582,15 @@ public class Binder {
     Env<FieldSymbol, Const.Value> constenv =
         new LazyEnv<>(completers.build(), SimpleEnv.<FieldSymbol, Const.Value>builder().build());
 
-    SimpleEnv.Builder<ClassSymbol, SourceTypeBoundClass> builder = SimpleEnv.builder();
-    for (ClassSymbol sym : syms) {
-      builder.put(sym, new ConstBinder(constenv, sym, baseEnv, env.get(sym)).bind());
-    }
-    return builder.build();
+    return bindAll(
+        syms,
+        executor,
+        new Function<ClassSymbol, SourceTypeBoundClass>() {
+          @Override
+          public SourceTypeBoundClass apply(ClassSymbol sym) {
+            return new ConstBinder(constenv, sym, baseEnv, env.get(sym)).bind();
+          }
+        });
   }
 
   static boolean isConst(FieldInfo field) {
@@ -367,12 +625,17 @@ public class Binder {
   private static Env<ClassSymbol, SourceTypeBoundClass> disambiguateTypeAnnotations(
       ImmutableSet<ClassSymbol> syms,
       Env<ClassSymbol, SourceTypeBoundClass> stenv,
-      Env<ClassSymbol, TypeBoundClass> tenv) {
-    SimpleEnv.Builder<ClassSymbol, SourceTypeBoundClass> builder = SimpleEnv.builder();
-    for (ClassSymbol sym : syms) {
-      builder.put(sym, DisambiguateTypeAnnotations.bind(stenv.get(sym), tenv));
-    }
-    return builder.build();
+      Env<ClassSymbol, TypeBoundClass> tenv,
+      ExecutorService executor) {
+    return bindAll(
+        syms,
+        executor,
+        new Function<ClassSymbol, SourceTypeBoundClass>() {
+          @Override
+          public SourceTypeBoundClass apply(ClassSymbol sym) {
+            return DisambiguateTypeAnnotations.bind(stenv.get(sym), tenv);
+          }
+        });
   }
 
   /** The result of binding: bound nodes for sources in the compilation, and the classpath. */
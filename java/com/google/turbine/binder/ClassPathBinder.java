@@ -16,28 +16,42 @@
 
 package com.google.turbine.binder;
 
-import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.turbine.binder.bound.ModuleInfo;
 import com.google.turbine.binder.bytecode.BytecodeBinder;
 import com.google.turbine.binder.bytecode.BytecodeBoundClass;
 import com.google.turbine.binder.env.Env;
 import com.google.turbine.binder.env.SimpleEnv;
-import com.google.turbine.binder.lookup.SimpleTopLevelIndex;
+import com.google.turbine.binder.lookup.LookupKey;
+import com.google.turbine.binder.lookup.LookupResult;
+import com.google.turbine.binder.lookup.Scope;
 import com.google.turbine.binder.lookup.TopLevelIndex;
 import com.google.turbine.binder.sym.ClassSymbol;
 import com.google.turbine.binder.sym.ModuleSymbol;
 import com.google.turbine.zip.Zip;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
 
-/** Sets up an environment for symbols on the classpath. */
+/**
+ * Sets up an environment for symbols on the classpath.
+ *
+ * <p>Binding a jar only reads its central directory, or a pre-computed {@link ClassPathIndex}, and
+ * records which entries belong to each package. The classes in a package are bound the first
+ * time that package, or a class in it, is looked up, since most compilations only reference a
+ * small fraction of their classpath.
+ */
 public class ClassPathBinder {
 
   /**
@@ -48,98 +62,382 @@ public class ClassPathBinder {
 
   /** Creates an environment containing symbols in the given classpath. */
   public static ClassPath bindClasspath(Collection<Path> paths) throws IOException {
-    // TODO(cushon): this is going to require an env eventually,
-    // e.g. to look up type parameters in enclosing declarations
-    Map<ClassSymbol, BytecodeBoundClass> transitive = new LinkedHashMap<>();
-    Map<ClassSymbol, BytecodeBoundClass> map = new HashMap<>();
-    Map<ModuleSymbol, ModuleInfo> modules = new HashMap<>();
-    Env<ClassSymbol, BytecodeBoundClass> benv =
+    ImmutableList.Builder<BoundJar> jars = ImmutableList.builder();
+    for (Path path : paths) {
+      jars.add(bindJar(path));
+    }
+    return new JarClassPath(jars.build());
+  }
+
+  /**
+   * Creates an environment containing symbols in the given classpath, re-using bound jars from the
+   * given cache.
+   */
+  public static ClassPath bindClasspath(Collection<Path> paths, ClassPathCache cache)
+      throws IOException {
+    ImmutableList.Builder<BoundJar> jars = ImmutableList.builder();
+    for (Path path : paths) {
+      jars.add(cache.get(path));
+    }
+    return new JarClassPath(jars.build());
+  }
+
+  /**
+   * A classpath backed by a search path of jars. Classes in earlier jars shadow classes with the
+   * same name in later jars, and classes in any jar shadow repackaged transitive dependencies.
+   */
+  private static class JarClassPath implements ClassPath {
+
+    private final ImmutableList<BoundJar> jars;
+
+    /** The transitive classes in each package, with the first definition of each class winning. */
+    private final ImmutableMap<String, ImmutableMap<ClassSymbol, BytecodeBoundClass>> transitive;
+
+    private final SimpleEnv<ModuleSymbol, ModuleInfo> moduleEnv;
+
+    /** The root of the package tree, i.e. the default package. */
+    private final PackageNode root = new PackageNode("");
+
+    /** The merged view of each package that has been looked up so far. */
+    private final ConcurrentMap<String, PackageView> views = new ConcurrentHashMap<>();
+
+    JarClassPath(ImmutableList<BoundJar> jars) {
+      this.jars = jars;
+      Map<String, Map<ClassSymbol, BytecodeBoundClass>> transitive = new HashMap<>();
+      Map<ModuleSymbol, ModuleInfo> modules = new HashMap<>();
+      for (BoundJar jar : jars) {
+        for (String packageName : jar.packageNames()) {
+          root.insert(packageName);
+        }
+        for (Map.Entry<ClassSymbol, BytecodeBoundClass> entry : jar.transitive.entrySet()) {
+          String packageName = packageName(entry.getKey());
+          Map<ClassSymbol, BytecodeBoundClass> classes = transitive.get(packageName);
+          if (classes == null) {
+            root.insert(packageName);
+            classes = new LinkedHashMap<>();
+            transitive.put(packageName, classes);
+          }
+          classes.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        modules.putAll(jar.modules);
+      }
+      ImmutableMap.Builder<String, ImmutableMap<ClassSymbol, BytecodeBoundClass>> builder =
+          ImmutableMap.builder();
+      for (Map.Entry<String, Map<ClassSymbol, BytecodeBoundClass>> entry : transitive.entrySet()) {
+        builder.put(entry.getKey(), ImmutableMap.copyOf(entry.getValue()));
+      }
+      this.transitive = builder.build();
+      this.moduleEnv = new SimpleEnv<>(ImmutableMap.copyOf(modules));
+    }
+
+    /** Returns the merged view of the given package, binding its classes if necessary. */
+    private PackageView view(String packageName) {
+      PackageView result = views.get(packageName);
+      if (result == null) {
+        Map<ClassSymbol, BytecodeBoundClass> classes = new LinkedHashMap<>();
+        for (BoundJar jar : jars) {
+          for (Map.Entry<ClassSymbol, BytecodeBoundClass> entry :
+              jar.classes(packageName).entrySet()) {
+            classes.putIfAbsent(entry.getKey(), entry.getValue());
+          }
+        }
+        ImmutableMap<ClassSymbol, BytecodeBoundClass> transitiveClasses =
+            transitive.get(packageName);
+        if (transitiveClasses != null) {
+          for (Map.Entry<ClassSymbol, BytecodeBoundClass> entry : transitiveClasses.entrySet()) {
+            classes.putIfAbsent(entry.getKey(), entry.getValue());
+          }
+        }
+        result = new PackageView(ImmutableMap.copyOf(classes));
+        PackageView existing = views.putIfAbsent(packageName, result);
+        if (existing != null) {
+          result = existing;
+        }
+      }
+      return result;
+    }
+
+    private final Env<ClassSymbol, BytecodeBoundClass> env =
         new Env<ClassSymbol, BytecodeBoundClass>() {
           @Override
           public BytecodeBoundClass get(ClassSymbol sym) {
-            return map.get(sym);
+            return view(packageName(sym)).classes.get(sym);
           }
         };
-    for (Path path : paths) {
-      try {
-        bindJar(path, map, modules, benv, transitive);
-      } catch (IOException e) {
-        throw new IOException("error reading " + path, e);
-      }
+
+    /** Looks up top-level qualified type names. */
+    private final Scope scope =
+        new Scope() {
+          @Override
+          @Nullable
+          public LookupResult lookup(LookupKey lookupKey) {
+            PackageNode curr = root;
+            while (true) {
+              String simpleName = lookupKey.first();
+              ClassSymbol sym = view(curr.name).bySimpleName.get(simpleName);
+              if (sym != null) {
+                return new LookupResult(sym, lookupKey);
+              }
+              curr = curr.children.get(simpleName);
+              if (curr == null || !lookupKey.hasNext()) {
+                return null;
+              }
+              lookupKey = lookupKey.rest();
+            }
+          }
+        };
+
+    private final TopLevelIndex index =
+        new TopLevelIndex() {
+          @Override
+          public Scope scope() {
+            return scope;
+          }
+
+          @Override
+          public Scope lookupPackage(ImmutableList<String> packagename) {
+            PackageNode curr = root;
+            for (String bit : packagename) {
+              curr = curr.children.get(bit);
+              if (curr == null) {
+                return null;
+              }
+            }
+            String packageName = curr.name;
+            return new Scope() {
+              @Override
+              @Nullable
+              public LookupResult lookup(LookupKey lookupKey) {
+                ClassSymbol sym = view(packageName).bySimpleName.get(lookupKey.first());
+                return sym != null ? new LookupResult(sym, lookupKey) : null;
+              }
+            };
+          }
+        };
+
+    @Override
+    public Env<ClassSymbol, BytecodeBoundClass> env() {
+      return env;
     }
-    for (Map.Entry<ClassSymbol, BytecodeBoundClass> entry : transitive.entrySet()) {
-      ClassSymbol symbol = entry.getKey();
-      if (!map.containsKey(symbol)) {
-        map.put(symbol, entry.getValue());
-      }
+
+    @Override
+    public Env<ModuleSymbol, ModuleInfo> moduleEnv() {
+      return moduleEnv;
     }
-    SimpleEnv<ClassSymbol, BytecodeBoundClass> env = new SimpleEnv<>(ImmutableMap.copyOf(map));
-    SimpleEnv<ModuleSymbol, ModuleInfo> moduleEnv = new SimpleEnv<>(ImmutableMap.copyOf(modules));
-    TopLevelIndex index = SimpleTopLevelIndex.of(env.asMap().keySet());
-    return new ClassPath() {
-      @Override
-      public Env<ClassSymbol, BytecodeBoundClass> env() {
-        return env;
-      }
 
-      @Override
-      public Env<ModuleSymbol, ModuleInfo> moduleEnv() {
-        return moduleEnv;
+    @Override
+    public TopLevelIndex index() {
+      return index;
+    }
+  }
+
+  /** A package in the classpath's package tree. */
+  private static class PackageNode {
+
+    /** The binary name of the package, e.g. {@code java/util}. */
+    final String name;
+
+    final Map<String, PackageNode> children = new HashMap<>();
+
+    PackageNode(String name) {
+      this.name = name;
+    }
+
+    /** Inserts the package with the given binary name, creating any needed parent packages. */
+    void insert(String packageName) {
+      if (packageName.isEmpty()) {
+        return;
       }
+      PackageNode curr = this;
+      int start = 0;
+      while (start <= packageName.length()) {
+        int end = packageName.indexOf('/', start);
+        if (end == -1) {
+          end = packageName.length();
+        }
+        String bit = packageName.substring(start, end);
+        PackageNode child = curr.children.get(bit);
+        if (child == null) {
+          child = new PackageNode(packageName.substring(0, end));
+          curr.children.put(bit, child);
+        }
+        curr = child;
+        start = end + 1;
+      }
+    }
+  }
+
+  /** The classes in a package, merged across all jars on the classpath. */
+  private static class PackageView {
 
-      @Override
-      public TopLevelIndex index() {
-        return index;
+    final ImmutableMap<ClassSymbol, BytecodeBoundClass> classes;
+
+    /** The classes in the package, indexed by the simple name relative to the package. */
+    final ImmutableMap<String, ClassSymbol> bySimpleName;
+
+    PackageView(ImmutableMap<ClassSymbol, BytecodeBoundClass> classes) {
+      this.classes = classes;
+      ImmutableMap.Builder<String, ClassSymbol> bySimpleName = ImmutableMap.builder();
+      for (ClassSymbol sym : classes.keySet()) {
+        String binaryName = sym.binaryName();
+        bySimpleName.put(binaryName.substring(binaryName.lastIndexOf('/') + 1), sym);
       }
-    };
+      this.bySimpleName = bySimpleName.build();
+    }
   }
 
-  private static void bindJar(
-      Path path,
-      Map<ClassSymbol, BytecodeBoundClass> env,
-      Map<ModuleSymbol, ModuleInfo> modules,
-      Env<ClassSymbol, BytecodeBoundClass> benv,
-      Map<ClassSymbol, BytecodeBoundClass> transitive)
-      throws IOException {
-    // TODO(cushon): don't leak file descriptors
-    for (Zip.Entry ze : new Zip.ZipIterable(path)) {
-      String name = ze.name();
-      if (!name.endsWith(".class")) {
-        continue;
+  /**
+   * The symbols bound from a single jar. Bound jars don't depend on the rest of the classpath, so
+   * they can be shared by compilations with different classpaths.
+   */
+  static class BoundJar {
+
+    /**
+     * A rough estimate of the heap used by each class in the jar, excluding its class file data.
+     */
+    private static final int BYTES_PER_CLASS = 1024;
+
+    private final Path path;
+    private final Zip.ZipIterable zip;
+
+    private final ClassPathIndex index;
+
+    final ImmutableMap<ClassSymbol, BytecodeBoundClass> transitive;
+    final ImmutableMap<ModuleSymbol, ModuleInfo> modules;
+    final long size;
+
+    /** The bound classes in each package that has been looked up so far. */
+    private final ConcurrentMap<String, ImmutableMap<ClassSymbol, BytecodeBoundClass>> loaded =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Classes are resolved against other classes in the same jar (e.g. to find type parameters of
+     * enclosing classes), so the bindings don't depend on the rest of the classpath.
+     */
+    private final Env<ClassSymbol, BytecodeBoundClass> env =
+        new Env<ClassSymbol, BytecodeBoundClass>() {
+          @Override
+          public BytecodeBoundClass get(ClassSymbol sym) {
+            BytecodeBoundClass result = classes(packageName(sym)).get(sym);
+            return result != null ? result : transitive.get(sym);
+          }
+        };
+
+    private BoundJar(
+        Path path,
+        Zip.ZipIterable zip,
+        ClassPathIndex index,
+        Map<ClassSymbol, Zip.Entry> transitive,
+        ImmutableMap<ModuleSymbol, ModuleInfo> modules,
+        long size) {
+      this.path = path;
+      this.zip = zip;
+      this.index = index;
+      ImmutableMap.Builder<ClassSymbol, BytecodeBoundClass> builder = ImmutableMap.builder();
+      for (Map.Entry<ClassSymbol, Zip.Entry> entry : transitive.entrySet()) {
+        builder.put(entry.getKey(), bind(entry.getKey(), entry.getValue()));
       }
-      if (name.startsWith(TRANSITIVE_PREFIX)) {
-        ClassSymbol sym =
-            new ClassSymbol(
-                name.substring(TRANSITIVE_PREFIX.length(), name.length() - ".class".length()));
-        transitive.computeIfAbsent(
-            sym,
-            new Function<ClassSymbol, BytecodeBoundClass>() {
-              @Override
-              public BytecodeBoundClass apply(ClassSymbol sym) {
-                return new BytecodeBoundClass(sym, toByteArrayOrDie(ze), benv, path.toString());
-              }
-            });
-        continue;
+      this.transitive = builder.build();
+      this.modules = modules;
+      this.size = size;
+    }
+
+    /** The binary names of the packages in the jar that contain classes. */
+    Collection<String> packageNames() {
+      return index.packages.keySet();
+    }
+
+    /** Returns the classes in the given package, binding them if necessary. */
+    ImmutableMap<ClassSymbol, BytecodeBoundClass> classes(String packageName) {
+      ImmutableMap<ClassSymbol, BytecodeBoundClass> result = loaded.get(packageName);
+      if (result == null) {
+        result = bindPackage(packageName);
+        ImmutableMap<ClassSymbol, BytecodeBoundClass> existing =
+            loaded.putIfAbsent(packageName, result);
+        if (existing != null) {
+          result = existing;
+        }
+      }
+      return result;
+    }
+
+    private ImmutableMap<ClassSymbol, BytecodeBoundClass> bindPackage(String packageName) {
+      int[] offsets = index.packages.get(packageName);
+      if (offsets == null) {
+        return ImmutableMap.of();
       }
-      if (name.substring(name.lastIndexOf('/') + 1).equals("module-info.class")) {
-        ModuleInfo moduleInfo =
-            BytecodeBinder.bindModuleInfo(path.toString(), toByteArrayOrDie(ze));
-        modules.put(new ModuleSymbol(moduleInfo.name()), moduleInfo);
-        continue;
+      Map<ClassSymbol, BytecodeBoundClass> classes = new LinkedHashMap<>();
+      for (int offset : offsets) {
+        Zip.Entry ze = zip.entry(offset);
+        String name = ze.name();
+        ClassSymbol sym = new ClassSymbol(name.substring(0, name.length() - ".class".length()));
+        if (!classes.containsKey(sym)) {
+          classes.put(sym, bind(sym, ze));
+        }
       }
-      ClassSymbol sym = new ClassSymbol(name.substring(0, name.length() - ".class".length()));
-      if (!env.containsKey(sym)) {
-        env.put(sym, new BytecodeBoundClass(sym, toByteArrayOrDie(ze), benv, path.toString()));
+      return ImmutableMap.copyOf(classes);
+    }
+
+    private BytecodeBoundClass bind(ClassSymbol sym, Zip.Entry ze) {
+      return new BytecodeBoundClass(sym, toByteBufferOrDie(ze), env, path.toString());
+    }
+
+    /**
+     * Returns an estimate of the memory retained by the bound jar once all of its classes have been
+     * read.
+     */
+    long weight() {
+      long classes = transitive.size();
+      for (int[] offsets : index.packages.values()) {
+        classes += offsets.length;
       }
+      return size + BYTES_PER_CLASS * classes;
     }
   }
 
-  private static Supplier<byte[]> toByteArrayOrDie(Zip.Entry ze) {
+  static BoundJar bindJar(Path path) throws IOException {
+    try {
+      return bindJarOrThrow(path);
+    } catch (IOException e) {
+      throw new IOException("error reading " + path, e);
+    }
+  }
+
+  private static BoundJar bindJarOrThrow(Path path) throws IOException {
+    Zip.ZipIterable zip = new Zip.ZipIterable(path);
+    ClassPathIndex index = ClassPathIndex.index(zip);
+    Map<ClassSymbol, Zip.Entry> transitive = new LinkedHashMap<>();
+    for (int offset : index.transitive) {
+      Zip.Entry ze = zip.entry(offset);
+      String name = ze.name();
+      ClassSymbol sym =
+          new ClassSymbol(
+              name.substring(TRANSITIVE_PREFIX.length(), name.length() - ".class".length()));
+      transitive.putIfAbsent(sym, ze);
+    }
+    Map<ModuleSymbol, ModuleInfo> modules = new LinkedHashMap<>();
+    for (int offset : index.modules) {
+      ModuleInfo moduleInfo =
+          BytecodeBinder.bindModuleInfo(path.toString(), toByteBufferOrDie(zip.entry(offset)));
+      modules.put(new ModuleSymbol(moduleInfo.name()), moduleInfo);
+    }
+    return new BoundJar(
+        path, zip, index, transitive, ImmutableMap.copyOf(modules), Files.size(path));
+  }
+
+  /** Returns the binary name of the package containing the given class. */
+  private static String packageName(ClassSymbol sym) {
+    String binaryName = sym.binaryName();
+    int idx = binaryName.lastIndexOf('/');
+    return idx != -1 ? binaryName.substring(0, idx) : "";
+  }
+
+  private static Supplier<ByteBuffer> toByteBufferOrDie(Zip.Entry ze) {
     return Suppliers.memoize(
-        new Supplier<byte[]>() {
+        new Supplier<ByteBuffer>() {
           @Override
-          public byte[] get() {
-            return ze.data();
+          public ByteBuffer get() {
+            return ze.dataBuffer();
           }
         });
   }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.binder;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.turbine.binder.ClassPathBinder.BoundJar;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of bound classpath jars, which can be shared by all compilations in a process (e.g. a
+ * persistent worker) so that jars which appear on many classpaths are only indexed once.
+ *
+ * <p>Jars are keyed by their path, size, modification time, and file key (if the file system
+ * provides one), so a jar that changes on disk is bound again. Entries are evicted in approximately
+ * least-recently-used order once the estimated memory footprint of the cached jars exceeds the
+ * maximum weight. The cache is safe for use by concurrent compilations.
+ */
+public class ClassPathCache {
+
+  private final Cache<JarKey, BoundJar> cache;
+
+  /**
+   * Creates a cache that retains bound jars up to the given estimated memory footprint, in bytes.
+   */
+  public ClassPathCache(long maximumWeight) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maximumWeight)
+            .weigher(
+                new Weigher<JarKey, BoundJar>() {
+                  @Override
+                  public int weigh(JarKey key, BoundJar jar) {
+                    return Ints.saturatedCast(jar.weight());
+                  }
+                })
+            .build();
+  }
+
+  /** Returns the bound jar for the given path, binding it if it isn't already cached. */
+  BoundJar get(Path path) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    JarKey key =
+        new JarKey(path, attributes.size(), attributes.lastModifiedTime(), attributes.fileKey());
+    try {
+      return cache.get(
+          key,
+          new Callable<BoundJar>() {
+            @Override
+            public BoundJar call() throws IOException {
+              return ClassPathBinder.bindJar(path);
+            }
+          });
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      throw new AssertionError(e.getCause());
+    } catch (UncheckedExecutionException | ExecutionError e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+  }
+
+  /** The identity of a jar file on disk. */
+  private static class JarKey {
+    private final Path path;
+    private final long size;
+    private final FileTime lastModifiedTime;
+    @Nullable private final Object fileKey;
+
+    JarKey(Path path, long size, FileTime lastModifiedTime, @Nullable Object fileKey) {
+      this.path = path;
+      this.size = size;
+      this.lastModifiedTime = lastModifiedTime;
+      this.fileKey = fileKey;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, size, lastModifiedTime, fileKey);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof JarKey)) {
+        return false;
+      }
+      JarKey that = (JarKey) obj;
+      return path.equals(that.path)
+          && size == that.size
+          && lastModifiedTime.equals(that.lastModifiedTime)
+          && Objects.equals(fileKey, that.fileKey);
+    }
+  }
+}
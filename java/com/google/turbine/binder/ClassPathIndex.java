@@ -0,0 +1,362 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.binder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.turbine.zip.Zip;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * The class entries of a jar, as central directory offsets grouped by package.
+ *
+ * <p>Indexing a jar requires a pass over its central directory. Jars written by turbine can
+ * include a pre-computed index as their last entry (see {@link #NAME}), which is read straight
+ * out of the mapped archive instead. The index records the size and CRC-32 of the central
+ * directory records that precede it, and is ignored in favour of scanning the jar if either
+ * doesn't match.
+ */
+public class ClassPathIndex {
+
+  /** The name of the jar entry containing a serialized index. */
+  public static final String NAME = "META-INF/TURBINE/INDEX";
+
+  private static final String CLASS_SUFFIX = ".class";
+  private static final String MODULE_INFO = "module-info.class";
+
+  private static final byte[] TRANSITIVE_PREFIX_BYTES =
+      ClassPathBinder.TRANSITIVE_PREFIX.getBytes(UTF_8);
+  private static final byte[] CLASS_SUFFIX_BYTES = CLASS_SUFFIX.getBytes(UTF_8);
+  private static final byte[] MODULE_INFO_BYTES = MODULE_INFO.getBytes(UTF_8);
+
+  /** The size of the index entry's central directory record, which has no extra field. */
+  private static final int RECORD_SIZE =
+      Zip.centralDirectoryRecordSize(NAME, /* extra= */ null, /* comment= */ null);
+
+  private static final int MAGIC = 0x54424958;
+  private static final int VERSION = 2;
+
+  /** The size of the central directory the index was computed for. */
+  private final int centralDirectorySize;
+
+  /** The CRC-32 of the central directory records preceding the index entry's record. */
+  private final int centralDirectoryCrc;
+
+  /** The central directory offsets of the class entries in each package. */
+  final ImmutableMap<String, int[]> packages;
+
+  /** The central directory offsets of repackaged transitive dependencies. */
+  final int[] transitive;
+
+  /** The central directory offsets of module-info classes. */
+  final int[] modules;
+
+  private ClassPathIndex(
+      int centralDirectorySize,
+      int centralDirectoryCrc,
+      ImmutableMap<String, int[]> packages,
+      int[] transitive,
+      int[] modules) {
+    this.centralDirectorySize = centralDirectorySize;
+    this.centralDirectoryCrc = centralDirectoryCrc;
+    this.packages = packages;
+    this.transitive = transitive;
+    this.modules = modules;
+  }
+
+  /**
+   * Returns an index of the given jar, reading the jar's serialized index if it has a valid one and
+   * scanning its central directory otherwise.
+   */
+  static ClassPathIndex index(Zip.ZipIterable zip) {
+    int offset = indexOffset(zip);
+    if (offset == -1) {
+      return scan(zip, 0);
+    }
+    int crc = centralDirectoryCrc(zip, offset);
+    ClassPathIndex index = read(zip.entry(offset).dataBuffer(), zip.centralDirectorySize());
+    if (index != null && index.centralDirectoryCrc == crc) {
+      return index;
+    }
+    return scan(zip, crc);
+  }
+
+  /**
+   * Indexes a jar by scanning its central directory. If the jar ends with a serialized index, the
+   * result serializes to the index that should have been written for it.
+   */
+  public static ClassPathIndex scan(Zip.ZipIterable zip) {
+    int offset = indexOffset(zip);
+    return scan(zip, offset != -1 ? centralDirectoryCrc(zip, offset) : 0);
+  }
+
+  private static ClassPathIndex scan(Zip.ZipIterable zip, int centralDirectoryCrc) {
+    Builder builder = new Builder();
+    // Names are matched against the raw bytes in the central directory, and only decoded for the
+    // entries that are kept. Entries in the same package are usually adjacent, so the package name
+    // is only decoded when it changes.
+    byte[] lastPackageBytes = null;
+    String lastPackage = null;
+    Zip.Cursor cursor = zip.cursor();
+    while (cursor.next()) {
+      if (!cursor.nameEndsWith(CLASS_SUFFIX_BYTES)) {
+        continue;
+      }
+      if (cursor.nameStartsWith(TRANSITIVE_PREFIX_BYTES)) {
+        builder.transitive.add(cursor.cdOffset());
+        continue;
+      }
+      int idx = cursor.nameLastIndexOf('/');
+      if (cursor.nameLength() - (idx + 1) == MODULE_INFO_BYTES.length
+          && cursor.nameEndsWith(MODULE_INFO_BYTES)) {
+        builder.modules.add(cursor.cdOffset());
+        continue;
+      }
+      int packageLength = Math.max(idx, 0);
+      if (lastPackageBytes == null
+          || lastPackageBytes.length != packageLength
+          || !cursor.nameStartsWith(lastPackageBytes)) {
+        lastPackage = cursor.name(0, packageLength);
+        lastPackageBytes = lastPackage.getBytes(UTF_8);
+      }
+      builder.addClass(lastPackage, cursor.cdOffset());
+    }
+    return builder.index(zip.centralDirectorySize(), centralDirectoryCrc);
+  }
+
+  /**
+   * Returns the central directory offset of the jar's serialized index, or {@code -1} if its last
+   * entry isn't an index.
+   */
+  private static int indexOffset(Zip.ZipIterable zip) {
+    int offset = zip.centralDirectorySize() - RECORD_SIZE;
+    return zip.hasEntry(offset) && zip.entry(offset).name().equals(NAME) ? offset : -1;
+  }
+
+  /** Returns the CRC-32 of the first {@code length} bytes of the jar's central directory. */
+  private static int centralDirectoryCrc(Zip.ZipIterable zip, int length) {
+    ByteBuffer cd = zip.centralDirectory();
+    cd.limit(length);
+    CRC32 crc = new CRC32();
+    crc.update(cd);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Builds the index of a jar as it is written. The serialized index must be the last entry in the
+   * jar, and must not have an extra field or comment.
+   */
+  public static class Builder {
+
+    private final Map<String, List<Integer>> packages = new LinkedHashMap<>();
+    private final List<Integer> transitive = new ArrayList<>();
+    private final List<Integer> modules = new ArrayList<>();
+
+    /** The offset of the next entry's central directory record. */
+    private int offset = 0;
+
+    /**
+     * A copy of the jar, which discards everything but the central directory so its CRC-32 can be
+     * computed.
+     */
+    private final CentralDirectorySink sink = new CentralDirectorySink();
+
+    private final ZipOutputStream shadow = new ZipOutputStream(sink);
+
+    /**
+     * Records the next entry in the jar, and its data. Entries must be added in the order they are
+     * written, and after they have been passed to {@link ZipOutputStream#putNextEntry}, which may
+     * update their extra fields.
+     */
+    public Builder add(ZipEntry entry, byte[] data) throws IOException {
+      String name = entry.getName();
+      if (name.endsWith(CLASS_SUFFIX)) {
+        if (name.startsWith(ClassPathBinder.TRANSITIVE_PREFIX)) {
+          transitive.add(offset);
+        } else if (isModuleInfo(name)) {
+          modules.add(offset);
+        } else {
+          addClass(name.substring(0, Math.max(name.lastIndexOf('/'), 0)), offset);
+        }
+      }
+      offset += Zip.centralDirectoryRecordSize(name, entry.getExtra(), entry.getComment());
+      shadow.putNextEntry(new ZipEntry(entry));
+      shadow.write(data);
+      return this;
+    }
+
+    private void addClass(String packageName, int offset) {
+      List<Integer> offsets = packages.get(packageName);
+      if (offsets == null) {
+        offsets = new ArrayList<>();
+        packages.put(packageName, offsets);
+      }
+      offsets.add(offset);
+    }
+
+    /** Returns the serialized index of the entries that have been added. */
+    public byte[] build() throws IOException {
+      shadow.closeEntry();
+      sink.recording = true;
+      shadow.close();
+      CRC32 crc = new CRC32();
+      crc.update(sink.centralDirectory.toByteArray(), 0, offset);
+      return index(offset + RECORD_SIZE, (int) crc.getValue()).toByteArray();
+    }
+
+    private ClassPathIndex index(int centralDirectorySize, int centralDirectoryCrc) {
+      ImmutableMap.Builder<String, int[]> packageOffsets = ImmutableMap.builder();
+      for (Map.Entry<String, List<Integer>> entry : packages.entrySet()) {
+        packageOffsets.put(entry.getKey(), Ints.toArray(entry.getValue()));
+      }
+      return new ClassPathIndex(
+          centralDirectorySize,
+          centralDirectoryCrc,
+          packageOffsets.build(),
+          Ints.toArray(transitive),
+          Ints.toArray(modules));
+    }
+  }
+
+  /** Discards the entries written to a zip, and records its central directory. */
+  private static class CentralDirectorySink extends OutputStream {
+
+    final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+
+    /** Set once the last entry has been closed, and only the central directory remains. */
+    boolean recording = false;
+
+    @Override
+    public void write(int b) {
+      if (recording) {
+        centralDirectory.write(b);
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      if (recording) {
+        centralDirectory.write(b, off, len);
+      }
+    }
+  }
+
+  private static boolean isModuleInfo(String name) {
+    return name.substring(name.lastIndexOf('/') + 1).equals(MODULE_INFO);
+  }
+
+  /**
+   * Serializes the index.
+   *
+   * <p>The format is a magic number and version, the size and CRC-32 of the central directory, the
+   * name and entry offsets of each package, and the offsets of the transitive and module-info
+   * entries. Names are length-prefixed UTF-8, and all numbers are big-endian.
+   */
+  public byte[] toByteArray() {
+    ByteArrayDataOutput output = ByteStreams.newDataOutput();
+    output.writeInt(MAGIC);
+    output.writeShort(VERSION);
+    output.writeInt(centralDirectorySize);
+    output.writeInt(centralDirectoryCrc);
+    output.writeInt(packages.size());
+    for (Map.Entry<String, int[]> entry : packages.entrySet()) {
+      byte[] name = entry.getKey().getBytes(UTF_8);
+      output.writeShort(name.length);
+      output.write(name);
+      writeOffsets(output, entry.getValue());
+    }
+    writeOffsets(output, transitive);
+    writeOffsets(output, modules);
+    return output.toByteArray();
+  }
+
+  private static void writeOffsets(ByteArrayDataOutput output, int[] offsets) {
+    output.writeInt(offsets.length);
+    for (int offset : offsets) {
+      output.writeInt(offset);
+    }
+  }
+
+  /**
+   * Reads a serialized index, or returns {@code null} if it is malformed or was computed for a
+   * central directory of a different size.
+   */
+  @Nullable
+  public static ClassPathIndex read(ByteBuffer buf, int centralDirectorySize) {
+    try {
+      if (buf.getInt() != MAGIC
+          || buf.getChar() != VERSION
+          || buf.getInt() != centralDirectorySize) {
+        return null;
+      }
+      int centralDirectoryCrc = buf.getInt();
+      int packageCount = buf.getInt();
+      ImmutableMap.Builder<String, int[]> packages = ImmutableMap.builder();
+      for (int i = 0; i < packageCount; i++) {
+        byte[] name = new byte[buf.getChar()];
+        buf.get(name);
+        int[] offsets = readOffsets(buf, centralDirectorySize);
+        if (offsets == null) {
+          return null;
+        }
+        packages.put(new String(name, UTF_8), offsets);
+      }
+      int[] transitive = readOffsets(buf, centralDirectorySize);
+      int[] modules = readOffsets(buf, centralDirectorySize);
+      if (transitive == null || modules == null || buf.hasRemaining()) {
+        return null;
+      }
+      return new ClassPathIndex(
+          centralDirectorySize, centralDirectoryCrc, packages.build(), transitive, modules);
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      // IllegalArgumentException is thrown for duplicate package names
+      return null;
+    }
+  }
+
+  @Nullable
+  private static int[] readOffsets(ByteBuffer buf, int centralDirectorySize) {
+    int length = buf.getInt();
+    if (length < 0 || length > buf.remaining() / 4) {
+      return null;
+    }
+    int[] offsets = new int[length];
+    for (int i = 0; i < length; i++) {
+      offsets[i] = buf.getInt();
+      if (offsets[i] < 0 || offsets[i] >= centralDirectorySize) {
+        return null;
+      }
+    }
+    return offsets;
+  }
+}
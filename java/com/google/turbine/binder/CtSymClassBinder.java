@@ -16,6 +16,8 @@
 
 package com.google.turbine.binder;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
@@ -29,6 +31,7 @@ import com.google.turbine.binder.sym.ClassSymbol;
 import com.google.turbine.binder.sym.ModuleSymbol;
 import com.google.turbine.zip.Zip;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -39,6 +42,8 @@ import javax.annotation.Nullable;
 /** Constructs a platform {@link ClassPath} from the current JDK's ct.sym file. */
 public class CtSymClassBinder {
 
+  private static final byte[] SIG_SUFFIX = ".sig".getBytes(UTF_8);
+
   @Nullable
   public static ClassPath bind(String version) throws IOException {
     Path javaHome = Paths.get(System.getProperty("java.home"));
@@ -56,24 +61,26 @@ public class CtSymClassBinder {
         };
     // ct.sym contains directories whose names are the concatentation of a list of target versions
     // (e.g. 789) and which contain interface class files with a .sig extension.
-    for (Zip.Entry ze : new Zip.ZipIterable(ctSym)) {
-      String name = ze.name();
-      if (!name.endsWith(".sig")) {
+    Zip.Cursor cursor = new Zip.ZipIterable(ctSym).cursor();
+    while (cursor.next()) {
+      if (!cursor.nameEndsWith(SIG_SUFFIX)) {
         continue;
       }
-      int idx = name.indexOf('/');
+      int idx = cursor.nameIndexOf('/');
       if (idx == -1) {
         continue;
       }
       // check if the directory matches the desired release
       // TODO(cushon): what happens when version numbers contain more than one digit?
-      if (!ze.name().substring(0, idx).contains(version)) {
+      if (!cursor.name(0, idx).contains(version)) {
         continue;
       }
+      Zip.Entry ze = cursor.entry();
+      String name = ze.name();
       ClassSymbol sym = new ClassSymbol(name.substring(idx + 1, name.length() - ".sig".length()));
       if (!map.containsKey(sym)) {
         map.put(
-            sym, new BytecodeBoundClass(sym, toByteArrayOrDie(ze), benv, ctSym + "!" + ze.name()));
+            sym, new BytecodeBoundClass(sym, toByteBufferOrDie(ze), benv, ctSym + "!" + ze.name()));
       }
     }
     if (map.isEmpty()) {
@@ -102,12 +109,12 @@ public class CtSymClassBinder {
     };
   }
 
-  private static Supplier<byte[]> toByteArrayOrDie(Zip.Entry ze) {
+  private static Supplier<ByteBuffer> toByteBufferOrDie(Zip.Entry ze) {
     return Suppliers.memoize(
-        new Supplier<byte[]>() {
+        new Supplier<ByteBuffer>() {
           @Override
-          public byte[] get() {
-            return ze.data();
+          public ByteBuffer get() {
+            return ze.dataBuffer();
           }
         });
   }
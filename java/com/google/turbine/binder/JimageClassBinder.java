@@ -38,6 +38,7 @@ import com.google.turbine.binder.sym.ModuleSymbol;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
@@ -89,6 +90,8 @@ public class JimageClassBinder {
   private final Multimap<String, String> packageMap;
   private final Path modulesRoot;
 
+  // Packages are loaded lazily, and the classpath may be queried concurrently (e.g. when lowering
+  // classes in parallel), so all access to the state below is guarded by this binder's lock.
   private final Set<String> loadedPackages = new HashSet<>();
   private final Table<String, String, ClassSymbol> packageClassesBySimpleName =
       HashBasedTable.create();
@@ -105,7 +108,7 @@ public class JimageClassBinder {
     return Files.exists(path) ? path : null;
   }
 
-  ModuleInfo module(String moduleName) {
+  synchronized ModuleInfo module(String moduleName) {
     ModuleInfo result = moduleMap.get(moduleName);
     if (result == null) {
       Path path = modulePath(moduleName);
@@ -114,7 +117,7 @@ public class JimageClassBinder {
       }
       try {
         path = path.resolve("module-info.class");
-        result = BytecodeBinder.bindModuleInfo(path.toString(), toByteArrayOrDie(path));
+        result = BytecodeBinder.bindModuleInfo(path.toString(), toByteBufferOrDie(path));
       } catch (IOException e) {
         throw new UncheckedIOException(e);
       }
@@ -123,7 +126,7 @@ public class JimageClassBinder {
     return result;
   }
 
-  boolean initPackage(String packageName) {
+  synchronized boolean initPackage(String packageName) {
     Collection<String> moduleNames = packageMap.get(packageName);
     if (moduleNames.isEmpty()) {
       return false;
@@ -135,7 +138,7 @@ public class JimageClassBinder {
         new Env<ClassSymbol, BytecodeBoundClass>() {
           @Override
           public BytecodeBoundClass get(ClassSymbol sym) {
-            return JimageClassBinder.this.env.get(sym);
+            return boundClass(sym);
           }
         };
     for (String moduleName : moduleNames) {
@@ -153,7 +156,7 @@ public class JimageClassBinder {
             ClassSymbol sym = new ClassSymbol(binaryName);
             packageClassesBySimpleName.put(packageName, simpleName(sym), sym);
             JimageClassBinder.this.env.put(
-                sym, new BytecodeBoundClass(sym, toByteArrayOrDie(path), env, path.toString()));
+                sym, new BytecodeBoundClass(sym, toByteBufferOrDie(path), env, path.toString()));
           }
         } catch (IOException e) {
           throw new UncheckedIOException(e);
@@ -163,13 +166,21 @@ public class JimageClassBinder {
     return true;
   }
 
-  private static Supplier<byte[]> toByteArrayOrDie(Path path) {
+  private synchronized ClassSymbol packageClass(String packageName, String simpleName) {
+    return packageClassesBySimpleName.get(packageName, simpleName);
+  }
+
+  private synchronized BytecodeBoundClass boundClass(ClassSymbol sym) {
+    return env.get(sym);
+  }
+
+  private static Supplier<ByteBuffer> toByteBufferOrDie(Path path) {
     return Suppliers.memoize(
-        new Supplier<byte[]>() {
+        new Supplier<ByteBuffer>() {
           @Override
-          public byte[] get() {
+          public ByteBuffer get() {
             try {
-              return Files.readAllBytes(path);
+              return ByteBuffer.wrap(Files.readAllBytes(path));
             } catch (IOException e) {
               throw new UncheckedIOException(e);
             }
@@ -196,18 +207,27 @@ public class JimageClassBinder {
           public LookupResult lookup(LookupKey lookupKey) {
             // Find the longest prefix of the key that corresponds to a package name.
             // TODO(cushon): SimpleTopLevelIndex uses a prefix map for this, does it matter?
-            Scope scope = null;
             ImmutableList<String> names = lookupKey.simpleNames();
+            StringBuilder prefix = new StringBuilder();
+            String packageName = null;
             int idx = -1;
             for (int i = 1; i < names.size(); i++) {
-              Scope cand = lookupPackage(names.subList(0, i));
-              if (cand != null) {
-                scope = cand;
+              if (i > 1) {
+                prefix.append('/');
+              }
+              prefix.append(names.get(i - 1));
+              String cand = prefix.toString();
+              if (initPackage(cand)) {
+                packageName = cand;
                 idx = i;
               }
             }
-            return scope != null
-                ? scope.lookup(new LookupKey(names.subList(idx, names.size())))
+            if (packageName == null) {
+              return null;
+            }
+            ClassSymbol sym = packageClass(packageName, names.get(idx));
+            return sym != null
+                ? new LookupResult(sym, new LookupKey(names.subList(idx, names.size())))
                 : null;
           }
         };
@@ -227,7 +247,7 @@ public class JimageClassBinder {
         @Nullable
         @Override
         public LookupResult lookup(LookupKey lookupKey) {
-          ClassSymbol sym = packageClassesBySimpleName.get(packageName, lookupKey.first());
+          ClassSymbol sym = packageClass(packageName, lookupKey.first());
           return sym != null ? new LookupResult(sym, lookupKey) : null;
         }
       };
@@ -243,7 +263,7 @@ public class JimageClassBinder {
       return new Env<ClassSymbol, BytecodeBoundClass>() {
         @Override
         public BytecodeBoundClass get(ClassSymbol sym) {
-          return initPackage(packageName(sym)) ? env.get(sym) : null;
+          return initPackage(packageName(sym)) ? boundClass(sym) : null;
         }
       };
     }
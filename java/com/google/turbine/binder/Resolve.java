@@ -17,6 +17,9 @@
 package com.google.turbine.binder;
 
 import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.turbine.binder.bound.BoundClass;
 import com.google.turbine.binder.bound.HeaderBoundClass;
@@ -33,43 +36,149 @@ import com.google.turbine.diag.SourceFile;
 import com.google.turbine.diag.TurbineError;
 import com.google.turbine.diag.TurbineError.ErrorKind;
 import com.google.turbine.model.TurbineVisibility;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
 
 /** Qualified name resolution. */
 public class Resolve {
 
+  /**
+   * The results of inherited member type resolution for each env. Envs are compared by identity
+   * and held weakly, so each compilation pass gets its own cache, which is discarded along with the
+   * pass's env.
+   */
+  private static final LoadingCache<Env<?, ?>, ConcurrentMap<MemberKey, Resolution>> CACHES =
+      CacheBuilder.newBuilder()
+          .weakKeys()
+          .build(
+              new CacheLoader<Env<?, ?>, ConcurrentMap<MemberKey, Resolution>>() {
+                @Override
+                public ConcurrentMap<MemberKey, Resolution> load(Env<?, ?> env) {
+                  return new ConcurrentHashMap<>();
+                }
+              });
+
   /**
    * Performs JLS 6.5.5.2 qualified type name resolution of a type with the given simple name,
    * qualified by the given symbol. The search considers members that are inherited from
    * superclasses or interfaces.
+   *
+   * <p>Results are cached by qualifying symbol, simple name, and the package of the origin symbol,
+   * so repeated resolutions of the same name in the same env don't walk the hierarchy again.
    */
   public static ClassSymbol resolve(
       Env<ClassSymbol, ? extends HeaderBoundClass> env,
       ClassSymbol origin,
       ClassSymbol sym,
       String simpleName) {
-    ClassSymbol result;
+    return resolve(env, CACHES.getUnchecked(env), origin, packageName(origin), sym, simpleName)
+        .sym;
+  }
+
+  private static Resolution resolve(
+      Env<ClassSymbol, ? extends HeaderBoundClass> env,
+      ConcurrentMap<MemberKey, Resolution> cache,
+      ClassSymbol origin,
+      String originPackage,
+      ClassSymbol sym,
+      String simpleName) {
+    MemberKey key = new MemberKey(sym, simpleName, originPackage);
+    Resolution result = cache.get(key);
+    if (result == null) {
+      result = resolveUncached(env, cache, origin, originPackage, sym, simpleName);
+      if (!result.originDependent) {
+        cache.put(key, result);
+      }
+    }
+    return result;
+  }
+
+  private static Resolution resolveUncached(
+      Env<ClassSymbol, ? extends HeaderBoundClass> env,
+      ConcurrentMap<MemberKey, Resolution> cache,
+      ClassSymbol origin,
+      String originPackage,
+      ClassSymbol sym,
+      String simpleName) {
     HeaderBoundClass bound = env.get(sym);
     if (bound == null) {
-      return null;
+      return Resolution.NOT_FOUND;
     }
-    result = bound.children().get(simpleName);
-    if (result != null) {
-      return result;
+    ClassSymbol child = bound.children().get(simpleName);
+    if (child != null) {
+      return new Resolution(child, /* originDependent= */ false);
     }
+    boolean originDependent = false;
+    List<ClassSymbol> supertypes = new ArrayList<>(bound.interfaces().size() + 1);
     if (bound.superclass() != null) {
-      result = resolve(env, origin, bound.superclass(), simpleName);
-      if (result != null && visible(origin, result, env.get(result))) {
-        return result;
+      supertypes.add(bound.superclass());
+    }
+    supertypes.addAll(bound.interfaces());
+    for (ClassSymbol supertype : supertypes) {
+      Resolution result = resolve(env, cache, origin, originPackage, supertype, simpleName);
+      originDependent |= result.originDependent;
+      if (result.sym != null) {
+        HeaderBoundClass info = env.get(result.sym);
+        // The visibility of private members depends on the origin class, not just its package.
+        originDependent |= TurbineVisibility.fromAccess(info.access()) == TurbineVisibility.PRIVATE;
+        if (visible(origin, result.sym, info)) {
+          return new Resolution(result.sym, originDependent);
+        }
       }
     }
-    for (ClassSymbol i : bound.interfaces()) {
-      result = resolve(env, origin, i, simpleName);
-      if (result != null && visible(origin, result, env.get(result))) {
-        return result;
+    return originDependent ? new Resolution(null, true) : Resolution.NOT_FOUND;
+  }
+
+  /** The key for a cached member type resolution. */
+  private static class MemberKey {
+    private final ClassSymbol sym;
+    private final String simpleName;
+    @Nullable private final String originPackage;
+
+    MemberKey(ClassSymbol sym, String simpleName, @Nullable String originPackage) {
+      this.sym = sym;
+      this.simpleName = simpleName;
+      this.originPackage = originPackage;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(sym, simpleName, originPackage);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof MemberKey)) {
+        return false;
       }
+      MemberKey other = (MemberKey) obj;
+      return sym.equals(other.sym)
+          && simpleName.equals(other.simpleName)
+          && Objects.equals(originPackage, other.originPackage);
+    }
+  }
+
+  /** The result of a member type resolution. */
+  private static class Resolution {
+    static final Resolution NOT_FOUND = new Resolution(null, false);
+
+    /** The resolved symbol, or {@code null}. */
+    @Nullable final ClassSymbol sym;
+
+    /**
+     * True if the result depends on the origin class and not just its package, in which case it
+     * isn't cached.
+     */
+    final boolean originDependent;
+
+    Resolution(@Nullable ClassSymbol sym, boolean originDependent) {
+      this.sym = sym;
+      this.originDependent = originDependent;
     }
-    return null;
   }
 
   /**
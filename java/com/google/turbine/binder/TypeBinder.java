@@ -17,6 +17,7 @@
 package com.google.turbine.binder;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.turbine.binder.bound.HeaderBoundClass;
@@ -56,6 +57,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /** Type binding. */
 public class TypeBinder {
@@ -99,10 +102,15 @@ public class TypeBinder {
   /**
    * A scope containing all symbols in lexically enclosing scopes of a class, including type
    * parameters, and declared and inherited members
+   *
+   * <p>The same simple names are typically looked up many times while binding a class, so the
+   * results (including failed lookups) are cached by simple name. The scope is retained by the
+   * bound class and may be used concurrently by later passes.
    */
   private static class ClassMemberScope implements Scope {
     private final ClassSymbol sym;
     private final Env<ClassSymbol, HeaderBoundClass> env;
+    private final ConcurrentMap<String, Optional<Symbol>> cache = new ConcurrentHashMap<>();
 
     public ClassMemberScope(ClassSymbol sym, Env<ClassSymbol, HeaderBoundClass> env) {
       this.sym = sym;
@@ -111,16 +119,25 @@ public class TypeBinder {
 
     @Override
     public LookupResult lookup(LookupKey lookup) {
+      Optional<Symbol> result = cache.get(lookup.first());
+      if (result == null) {
+        result = Optional.fromNullable(lookup(lookup.first()));
+        cache.put(lookup.first(), result);
+      }
+      return result.isPresent() ? new LookupResult(result.get(), lookup) : null;
+    }
+
+    private Symbol lookup(String name) {
       ClassSymbol curr = sym;
       while (curr != null) {
         HeaderBoundClass info = env.get(curr);
-        Symbol result = Resolve.resolve(env, sym, curr, lookup.first());
+        Symbol result = Resolve.resolve(env, sym, curr, name);
         if (result != null) {
-          return new LookupResult(result, lookup);
+          return result;
         }
-        result = info.typeParameters().get(lookup.first());
+        result = info.typeParameters().get(name);
         if (result != null) {
-          return new LookupResult(result, lookup);
+          return result;
         }
         curr = info.owner();
       }
@@ -40,6 +40,7 @@ import com.google.turbine.bytecode.ClassFile.AnnotationInfo.ElementValue.ArrayVa
 import com.google.turbine.bytecode.ClassFile.AnnotationInfo.ElementValue.ConstClassValue;
 import com.google.turbine.bytecode.ClassFile.AnnotationInfo.ElementValue.EnumConstValue;
 import com.google.turbine.bytecode.ClassFile.AnnotationInfo.ElementValue.Kind;
+import com.google.turbine.bytecode.ClassHeader;
 import com.google.turbine.bytecode.ClassReader;
 import com.google.turbine.bytecode.sig.Sig;
 import com.google.turbine.bytecode.sig.Sig.ClassSig;
@@ -51,6 +52,7 @@ import com.google.turbine.type.Type;
 import com.google.turbine.type.Type.ClassTy;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.RetentionPolicy;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.function.Function;
 import javax.annotation.Nullable;
@@ -67,17 +69,34 @@ public class BytecodeBoundClass implements BoundClass, HeaderBoundClass, TypeBou
 
   private final ClassSymbol sym;
   private final Env<ClassSymbol, BytecodeBoundClass> env;
+  private final Supplier<ClassHeader> header;
   private final Supplier<ClassFile> classFile;
   private final String jarFile;
 
   public BytecodeBoundClass(
       ClassSymbol sym,
-      final Supplier<byte[]> bytes,
+      final Supplier<ByteBuffer> bytes,
       Env<ClassSymbol, BytecodeBoundClass> env,
       String jarFile) {
     this.sym = sym;
     this.env = env;
     this.jarFile = jarFile;
+    // Most classpath classes are only used to resolve names, which only needs the class header.
+    // The full class file is read separately, if its members are needed.
+    this.header =
+        Suppliers.memoize(
+            new Supplier<ClassHeader>() {
+              @Override
+              public ClassHeader get() {
+                ClassHeader header = ClassReader.readHeader(jarFile + "!" + sym, bytes.get());
+                verify(
+                    header.name().equals(sym.binaryName()),
+                    "expected class data for %s, saw %s instead",
+                    sym.binaryName(),
+                    header.name());
+                return header;
+              }
+            });
     this.classFile =
         Suppliers.memoize(
             new Supplier<ClassFile>() {
@@ -123,12 +142,8 @@ public class BytecodeBoundClass implements BoundClass, HeaderBoundClass, TypeBou
           new Supplier<ClassSymbol>() {
             @Override
             public ClassSymbol get() {
-              for (ClassFile.InnerClass inner : classFile.get().innerClasses()) {
-                if (sym.binaryName().equals(inner.innerClass())) {
-                  return new ClassSymbol(inner.outerClass());
-                }
-              }
-              return null;
+              ClassFile.InnerClass self = header.get().self();
+              return self != null ? new ClassSymbol(self.outerClass()) : null;
             }
           });
 
@@ -144,14 +159,8 @@ public class BytecodeBoundClass implements BoundClass, HeaderBoundClass, TypeBou
             @Override
             public ImmutableMap<String, ClassSymbol> get() {
               ImmutableMap.Builder<String, ClassSymbol> result = ImmutableMap.builder();
-              for (ClassFile.InnerClass inner : classFile.get().innerClasses()) {
-                if (inner.innerName() == null) {
-                  // anonymous class
-                  continue;
-                }
-                if (sym.binaryName().equals(inner.outerClass())) {
-                  result.put(inner.innerName(), new ClassSymbol(inner.innerClass()));
-                }
+              for (Map.Entry<String, String> child : header.get().children().entrySet()) {
+                result.put(child.getKey(), new ClassSymbol(child.getValue()));
               }
               return result.build();
             }
@@ -167,13 +176,8 @@ public class BytecodeBoundClass implements BoundClass, HeaderBoundClass, TypeBou
           new Supplier<Integer>() {
             @Override
             public Integer get() {
-              int access = classFile.get().access();
-              for (ClassFile.InnerClass inner : classFile.get().innerClasses()) {
-                if (sym.binaryName().equals(inner.innerClass())) {
-                  access = inner.access();
-                }
-              }
-              return access;
+              ClassFile.InnerClass self = header.get().self();
+              return self != null ? self.access() : header.get().access();
             }
           });
 
@@ -222,7 +226,7 @@ public class BytecodeBoundClass implements BoundClass, HeaderBoundClass, TypeBou
           new Supplier<ClassSymbol>() {
             @Override
             public ClassSymbol get() {
-              String superclass = classFile.get().superName();
+              String superclass = header.get().superName();
               if (superclass == null) {
                 return null;
               }
@@ -241,7 +245,7 @@ public class BytecodeBoundClass implements BoundClass, HeaderBoundClass, TypeBou
             @Override
             public ImmutableList<ClassSymbol> get() {
               ImmutableList.Builder<ClassSymbol> result = ImmutableList.builder();
-              for (String i : classFile.get().interfaces()) {
+              for (String i : header.get().interfaces()) {
                 result.add(new ClassSymbol(i));
               }
               return result.build();
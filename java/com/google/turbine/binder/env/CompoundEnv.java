@@ -18,36 +18,97 @@ package com.google.turbine.binder.env;
 
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.collect.ImmutableList;
 import com.google.turbine.binder.sym.Symbol;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.annotation.Nullable;
 
-/** An {@link Env} that chains two existing envs together. */
+/**
+ * An {@link Env} that chains existing envs together.
+ *
+ * <p>Chains are flattened: appending a compound env adds its envs to the chain, so a lookup is a
+ * single loop over the underlying envs rather than a walk through nested compound envs. Once all
+ * of the envs in a chain are immutable, it can be {@link #freeze frozen} so that each symbol is
+ * only looked up in the underlying envs once.
+ */
 public class CompoundEnv<S extends Symbol, V> implements Env<S, V> {
 
-  private final Env<S, ? extends V> base;
-  private final Env<S, ? extends V> env;
+  /** A placeholder for symbols that aren't in any of the envs, since the cache can't hold nulls. */
+  private static final Object MISSING = new Object();
+
+  /** The envs in the chain, in lookup order (i.e. the most recently appended env first). */
+  private final ImmutableList<Env<S, ? extends V>> envs;
+
+  /** The results of previous lookups, if the chain is frozen. */
+  @Nullable private final ConcurrentMap<S, Object> cache;
 
-  private CompoundEnv(@Nullable Env<S, ? extends V> base, Env<S, ? extends V> env) {
-    this.base = base;
-    this.env = requireNonNull(env);
+  private CompoundEnv(
+      ImmutableList<Env<S, ? extends V>> envs, @Nullable ConcurrentMap<S, Object> cache) {
+    this.envs = envs;
+    this.cache = cache;
   }
 
   @Override
   public V get(S sym) {
-    V result = env.get(sym);
-    if (result != null) {
-      return result;
+    if (cache == null) {
+      return lookup(sym);
     }
-    return base != null ? base.get(sym) : null;
+    Object result = cache.get(sym);
+    if (result == null) {
+      result = lookup(sym);
+      cache.put(sym, result != null ? result : MISSING);
+    }
+    @SuppressWarnings("unchecked") // only values from the envs are cached
+    V value = result != MISSING ? (V) result : null;
+    return value;
+  }
+
+  private V lookup(S sym) {
+    for (int i = 0; i < envs.size(); i++) {
+      V result = envs.get(i).get(sym);
+      if (result != null) {
+        return result;
+      }
+    }
+    return null;
   }
 
   /** A chainable compound env with a single entry. */
   public static <S extends Symbol, V> CompoundEnv<S, V> of(Env<S, ? extends V> env) {
-    return new CompoundEnv<>(null, env);
+    ImmutableList.Builder<Env<S, ? extends V>> envs = ImmutableList.builder();
+    add(envs, env);
+    return new CompoundEnv<>(envs.build(), null);
   }
 
   /** Adds an env to the chain. */
   public CompoundEnv<S, V> append(Env<S, ? extends V> env) {
-    return new CompoundEnv<>(this, env);
+    ImmutableList.Builder<Env<S, ? extends V>> envs = ImmutableList.builder();
+    add(envs, env);
+    envs.addAll(this.envs);
+    return new CompoundEnv<>(envs.build(), null);
+  }
+
+  /**
+   * Returns a chain with the same envs, which remembers the result of looking up each symbol. This
+   * is only correct if the results of the underlying envs never change, for example for {@link
+   * SimpleEnv}s and classpaths, but not for a {@link LazyEnv} that is still being completed.
+   */
+  public CompoundEnv<S, V> freeze() {
+    return new CompoundEnv<>(envs, new ConcurrentHashMap<S, Object>());
+  }
+
+  /**
+   * Adds an env to a chain, flattening it if it is an unfrozen compound env. Frozen envs are added
+   * as-is, so their cache is shared.
+   */
+  private static <S extends Symbol, V> void add(
+      ImmutableList.Builder<Env<S, ? extends V>> envs, Env<S, ? extends V> env) {
+    requireNonNull(env);
+    if (env instanceof CompoundEnv && ((CompoundEnv<S, ? extends V>) env).cache == null) {
+      envs.addAll(((CompoundEnv<S, ? extends V>) env).envs);
+    } else {
+      envs.add(env);
+    }
   }
 }
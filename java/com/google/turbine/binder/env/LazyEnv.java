@@ -17,11 +17,20 @@
 package com.google.turbine.binder.env;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.turbine.binder.sym.Symbol;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.concurrent.GuardedBy;
 
 /**
  * An env that permits an analysis pass to access information about symbols from the current pass,
@@ -32,6 +41,12 @@ import java.util.Map;
  * classes in a topological sort order of that graph. Unfortuntately, we can't produce a suitable
  * sort order until the graph exists.
  *
+ * <p>The env may be queried concurrently. Each symbol is completed exactly once, by the first
+ * thread that asks for it, and any other threads that ask for the same symbol wait for that
+ * completion to finish. Cycles are tracked per chain of completions: a completer that
+ * transitively depends on itself fails with a {@link LazyBindingError}, whether the chain runs on a
+ * single thread or is split across threads that are waiting on each other.
+ *
  * @param <T> the interface type of the bound node {@link V}, shared by any underlying environments.
  * @param <V> a specific implementation of {@code T}. For example, during hierarchy binding {@link
  *     SourceHeaderBoundClass} nodes are being completed from the sources being compiled, and the
@@ -41,14 +56,27 @@ import java.util.Map;
  */
 public class LazyEnv<S extends Symbol, T, V extends T> implements Env<S, V> {
 
-  /** The list of symbols that are currently being processed, used to check for cycles. */
-  private final LinkedHashSet<S> seen = new LinkedHashSet<>();
+  /**
+   * The symbols that are currently being completed by each thread, in the order completion
+   * started, used to check for cycles.
+   */
+  private final ThreadLocal<LinkedHashSet<S>> seen =
+      new ThreadLocal<LinkedHashSet<S>>() {
+        @Override
+        protected LinkedHashSet<S> initialValue() {
+          return new LinkedHashSet<>();
+        }
+      };
 
   /** Lazy value providers for the symbols in the environment. */
   private final ImmutableMap<S, Completer<S, T, V>> completers;
 
-  /** Values that have already been computed. */
-  private final Map<S, V> cache = new LinkedHashMap<>();
+  /** Completions that have been started, and possibly finished. */
+  private final ConcurrentMap<S, Completion<S, V>> completions = new ConcurrentHashMap<>();
+
+  /** The in-flight completion that each thread is blocked on, used to check for cycles. */
+  @GuardedBy("waiting")
+  private final Map<Thread, Completion<S, V>> waiting = new HashMap<>();
 
   /** An underlying env of already-computed {@code T}s that can be queried during completion. */
   private final Env<S, T> rec;
@@ -58,23 +86,95 @@ public class LazyEnv<S extends Symbol, T, V extends T> implements Env<S, V> {
     this.rec = CompoundEnv.<S, T>of(base).append(this);
   }
 
+  /** The result of completing a symbol, and the thread that is responsible for completing it. */
+  private static class Completion<S, V> {
+    final S sym;
+    final Thread owner;
+    final SettableFuture<V> future = SettableFuture.create();
+
+    Completion(S sym, Thread owner) {
+      this.sym = sym;
+      this.owner = owner;
+    }
+  }
+
   @Override
   public V get(S sym) {
-    V v = cache.get(sym);
-    if (v != null) {
-      return v;
+    Completion<S, V> completion = completions.get(sym);
+    if (completion != null && completion.future.isDone()) {
+      return getDone(completion.future);
     }
     Completer<S, T, V> completer = completers.get(sym);
-    if (completer != null) {
-      if (!seen.add(sym)) {
-        throw new LazyBindingError(Joiner.on(" -> ").join(seen) + " -> " + sym);
+    if (completer == null) {
+      return null;
+    }
+    LinkedHashSet<S> chain = seen.get();
+    if (chain.contains(sym)) {
+      throw new LazyBindingError(Joiner.on(" -> ").join(chain) + " -> " + sym);
+    }
+    if (completion == null) {
+      Completion<S, V> started = new Completion<>(sym, Thread.currentThread());
+      completion = completions.putIfAbsent(sym, started);
+      if (completion == null) {
+        return complete(completer, started, chain);
       }
-      v = completer.complete(rec, sym);
-      seen.remove(sym);
-      cache.put(sym, v);
+    }
+    return await(completion, chain);
+  }
+
+  /** Runs the completer for a symbol that the current thread has claimed. */
+  private V complete(
+      Completer<S, T, V> completer, Completion<S, V> completion, LinkedHashSet<S> chain) {
+    chain.add(completion.sym);
+    try {
+      V v = completer.complete(rec, completion.sym);
+      completion.future.set(v);
       return v;
+    } catch (Throwable t) {
+      // Failures aren't cached, so a later request for the same symbol starts over, but any
+      // threads that are already waiting on this completion see the same failure.
+      completions.remove(completion.sym, completion);
+      completion.future.setException(t);
+      throw t;
+    } finally {
+      chain.remove(completion.sym);
+    }
+  }
+
+  /**
+   * Waits for another thread to complete a symbol. If that thread is (transitively) waiting on a
+   * completion owned by the current thread then waiting would deadlock, so the cycle is reported
+   * instead.
+   */
+  private V await(Completion<S, V> completion, LinkedHashSet<S> chain) {
+    Thread current = Thread.currentThread();
+    synchronized (waiting) {
+      Set<Thread> visited = new HashSet<>();
+      for (Completion<S, V> next = completion;
+          next != null && !next.future.isDone() && visited.add(next.owner);
+          next = waiting.get(next.owner)) {
+        if (next.owner == current) {
+          throw new LazyBindingError(Joiner.on(" -> ").join(chain) + " -> " + completion.sym);
+        }
+      }
+      waiting.put(current, completion);
+    }
+    try {
+      return getDone(completion.future);
+    } finally {
+      synchronized (waiting) {
+        waiting.remove(current);
+      }
+    }
+  }
+
+  private static <V> V getDone(SettableFuture<V> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new AssertionError(e.getCause());
     }
-    return null;
   }
 
   /** A lazy value provider which is given access to the current environment. */
@@ -18,10 +18,23 @@ package com.google.turbine.binder.lookup;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.turbine.binder.sym.Symbol;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.annotation.Nullable;
 
-/** A {@link TopLevelIndex} that aggregates multiple indices into one. */
+/**
+ * A {@link TopLevelIndex} that aggregates multiple indices into one.
+ *
+ * <p>The indices are merged incrementally: each qualified name that is looked up gets a node in a
+ * single trie, which remembers the result of the lookup in the underlying indices (including
+ * negative results). Repeated lookups of the same name, for example from the imports of many
+ * compilation units, only walk the merged trie.
+ */
 // Note: this implementation doesn't detect if the indices contain incompatible information,
 // e.g. a class name in one index that is a prefix of a package name in another index. This
 // shouldn't matter in practice because we rely on javac to reject invalid input, but it would
@@ -31,6 +44,9 @@ public class CompoundTopLevelIndex implements TopLevelIndex {
 
   private final ImmutableList<TopLevelIndex> indexes;
 
+  /** The root of the merged trie, i.e. the empty qualified name. */
+  private final Node root = new Node(ImmutableList.<String>of());
+
   private CompoundTopLevelIndex(ImmutableList<TopLevelIndex> indexes) {
     this.indexes = checkNotNull(indexes);
   }
@@ -40,19 +56,112 @@ public class CompoundTopLevelIndex implements TopLevelIndex {
     return new CompoundTopLevelIndex(ImmutableList.copyOf(indexes));
   }
 
+  /**
+   * A qualified name that has been looked up, either as a type name or as a package. The results
+   * of the lookups in the underlying indices are computed on first use.
+   */
+  private class Node {
+
+    private final ImmutableList<String> names;
+    private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<>();
+
+    /** The result of looking up the qualified name as a type, or {@code null}. */
+    final Supplier<LookupResult> result =
+        Suppliers.memoize(
+            new Supplier<LookupResult>() {
+              @Override
+              public LookupResult get() {
+                LookupKey lookupKey = new LookupKey(names);
+                // Return the first matching symbol.
+                for (TopLevelIndex index : indexes) {
+                  LookupResult result = index.scope().lookup(lookupKey);
+                  if (result != null) {
+                    return result;
+                  }
+                }
+                return null;
+              }
+            });
+
+    /** The scope of the package with the qualified name, or {@code null}. */
+    final Supplier<Scope> packageScope =
+        Suppliers.memoize(
+            new Supplier<Scope>() {
+              @Override
+              public Scope get() {
+                // When returning package scopes, build up a compound scope containing entries from
+                // all indices with matching packages.
+                CompoundScope result = null;
+                for (TopLevelIndex index : indexes) {
+                  Scope packageScope = index.lookupPackage(names);
+                  if (packageScope != null) {
+                    result =
+                        result == null
+                            ? CompoundScope.base(packageScope)
+                            : result.append(packageScope);
+                  }
+                }
+                return result != null ? new PackageScope(result) : null;
+              }
+            });
+
+    Node(ImmutableList<String> names) {
+      this.names = names;
+    }
+
+    Node child(String name) {
+      Node child = children.get(name);
+      if (child == null) {
+        child = new Node(ImmutableList.<String>builder().addAll(names).add(name).build());
+        Node existing = children.putIfAbsent(name, child);
+        if (existing != null) {
+          child = existing;
+        }
+      }
+      return child;
+    }
+  }
+
+  /**
+   * A merged package scope, which remembers the member (or lack of member) with each simple name.
+   * Package scopes only consider the first simple name of the key.
+   */
+  private static class PackageScope implements Scope {
+
+    private final Scope scope;
+    private final ConcurrentMap<String, Optional<Symbol>> members = new ConcurrentHashMap<>();
+
+    PackageScope(Scope scope) {
+      this.scope = scope;
+    }
+
+    @Nullable
+    @Override
+    public LookupResult lookup(LookupKey lookupKey) {
+      Optional<Symbol> member = members.get(lookupKey.first());
+      if (member == null) {
+        LookupResult result = scope.lookup(lookupKey);
+        member = result != null ? Optional.of(result.sym()) : Optional.<Symbol>absent();
+        members.put(lookupKey.first(), member);
+      }
+      return member.isPresent() ? new LookupResult(member.get(), lookupKey) : null;
+    }
+  }
+
+  private Node node(Iterable<String> names) {
+    Node node = root;
+    for (String name : names) {
+      node = node.child(name);
+    }
+    return node;
+  }
+
   private final Scope scope =
       new Scope() {
         @Nullable
         @Override
         public LookupResult lookup(LookupKey lookupKey) {
-          // Return the first matching symbol.
-          for (TopLevelIndex index : indexes) {
-            LookupResult result = index.scope().lookup(lookupKey);
-            if (result != null) {
-              return result;
-            }
-          }
-          return null;
+          return node(lookupKey.simpleNames()).result.get();
         }
       };
 
@@ -63,15 +172,6 @@ public class CompoundTopLevelIndex implements TopLevelIndex {
 
   @Override
   public Scope lookupPackage(ImmutableList<String> packagename) {
-    // When returning package scopes, build up a compound scope containing entries from all
-    // indices with matching packages.
-    CompoundScope result = null;
-    for (TopLevelIndex index : indexes) {
-      Scope packageScope = index.lookupPackage(packagename);
-      if (packageScope != null) {
-        result = result == null ? CompoundScope.base(packageScope) : result.append(packageScope);
-      }
-    }
-    return result;
+    return node(packagename).packageScope.get();
   }
 }
@@ -37,7 +37,8 @@ public class LookupKey {
     return simpleNames.get(0);
   }
 
-  boolean hasNext() {
+  /** Returns true if the qualified type name has more than one simple name. */
+  public boolean hasNext() {
     return simpleNames.size() > 1;
   }
 
@@ -23,6 +23,7 @@ import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.turbine.binder.sym.ClassSymbol;
 import com.google.turbine.diag.SourceFile;
+import com.google.turbine.diag.TurbineError;
 import com.google.turbine.tree.Tree.ImportDecl;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -32,7 +33,7 @@ import java.util.Map;
 public class MemberImportIndex {
 
   /** A cache of resolved static imports, keyed by the simple name of the member. */
-  private final Map<String, Supplier<ClassSymbol>> cache = new LinkedHashMap<>();
+  private final Map<String, Supplier<ClassSymbol>> cache;
 
   private final ImmutableList<Supplier<ClassSymbol>> classes;
 
@@ -41,6 +42,7 @@ public class MemberImportIndex {
       CanonicalSymbolResolver resolve,
       TopLevelIndex tli,
       ImmutableList<ImportDecl> imports) {
+    this.cache = new LinkedHashMap<>();
     ImmutableList.Builder<Supplier<ClassSymbol>> packageScopes = ImmutableList.builder();
     for (ImportDecl i : imports) {
       if (!i.stat()) {
@@ -79,6 +81,62 @@ public class MemberImportIndex {
     this.classes = packageScopes.build();
   }
 
+  private MemberImportIndex(
+      Map<String, Supplier<ClassSymbol>> cache, ImmutableList<Supplier<ClassSymbol>> classes) {
+    this.cache = cache;
+    this.classes = classes;
+  }
+
+  /**
+   * Returns a view of this index for another compilation unit with the same package and imports.
+   * Resolved imports are shared with this index. Diagnostics are reported against the source file
+   * this index was created for, so an import that fails to resolve is retried against the other
+   * unit's own index.
+   */
+  public MemberImportIndex withFallback(final Supplier<MemberImportIndex> local) {
+    Map<String, Supplier<ClassSymbol>> cache = new LinkedHashMap<>();
+    for (final String simpleName : this.cache.keySet()) {
+      cache.put(
+          simpleName,
+          fallback(
+              this.cache.get(simpleName),
+              new Supplier<ClassSymbol>() {
+                @Override
+                public ClassSymbol get() {
+                  return local.get().cache.get(simpleName).get();
+                }
+              }));
+    }
+    ImmutableList.Builder<Supplier<ClassSymbol>> classes = ImmutableList.builder();
+    for (int i = 0; i < this.classes.size(); i++) {
+      final int idx = i;
+      classes.add(
+          fallback(
+              this.classes.get(i),
+              new Supplier<ClassSymbol>() {
+                @Override
+                public ClassSymbol get() {
+                  return local.get().classes.get(idx).get();
+                }
+              }));
+    }
+    return new MemberImportIndex(cache, classes.build());
+  }
+
+  private static Supplier<ClassSymbol> fallback(
+      final Supplier<ClassSymbol> shared, final Supplier<ClassSymbol> local) {
+    return new Supplier<ClassSymbol>() {
+      @Override
+      public ClassSymbol get() {
+        try {
+          return shared.get();
+        } catch (TurbineError e) {
+          return local.get();
+        }
+      }
+    };
+  }
+
   /** Resolves the owner of a single-member static import of the given simple name. */
   public ClassSymbol singleMemberImport(String simpleName) {
     Supplier<ClassSymbol> cachedResult = cache.get(simpleName);
@@ -19,6 +19,7 @@ package com.google.turbine.binder.lookup;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.turbine.binder.sym.ClassSymbol;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -29,24 +30,45 @@ import javax.annotation.Nullable;
  * An index of canonical type names where all members are known statically.
  *
  * <p>Qualified names are represented internally as a tree, where each package name part or class
- * name is a node.
+ * name is a node. The tree is built with mutable hash-based nodes, and then frozen into a compact
+ * form where each node stores its children in sorted arrays.
  */
 public class SimpleTopLevelIndex implements TopLevelIndex {
 
   /** A class symbol or package. */
   public static class Node {
 
+    private static final String[] NO_NAMES = {};
+    private static final Node[] NO_CHILDREN = {};
+
     public Node lookup(String bit) {
-      return children.get(bit);
+      int idx = Arrays.binarySearch(names, bit);
+      return idx >= 0 ? children[idx] : null;
     }
 
     @Nullable private final ClassSymbol sym;
 
-    // TODO(cushon): the set of children is typically going to be small, consider optimizing this
-    // to use a denser representation where appropriate.
-    private final Map<String, Node> children = new HashMap<>();
+    /** The simple names of the children, in sorted order. */
+    private final String[] names;
+
+    /** The children, in the same order as their {@link #names}. */
+    private final Node[] children;
 
-    Node(ClassSymbol sym) {
+    Node(ClassSymbol sym, String[] names, Node[] children) {
+      this.sym = sym;
+      this.names = names;
+      this.children = children;
+    }
+  }
+
+  /** A class symbol or package in an index that is being built. */
+  private static class MutableNode {
+
+    @Nullable private final ClassSymbol sym;
+
+    private final Map<String, MutableNode> children = new HashMap<>();
+
+    MutableNode(ClassSymbol sym) {
       this.sym = sym;
     }
 
@@ -56,37 +78,58 @@ public class SimpleTopLevelIndex implements TopLevelIndex {
      *
      * @return {@code null} if an existing symbol with the same name has already been inserted.
      */
-    private Node insert(String name, ClassSymbol sym) {
-      Node child;
+    private MutableNode insert(String name, ClassSymbol sym) {
+      MutableNode child;
       if (children.containsKey(name)) {
         child = children.get(name);
         if (child.sym != null) {
           return null;
         }
       } else {
-        child = new Node(sym);
+        child = new MutableNode(sym);
         children.put(name, child);
       }
       return child;
     }
+
+    /**
+     * Returns a frozen copy of this node and its children. Simple names are shared between nodes
+     * using {@code names}.
+     */
+    private Node freeze(Map<String, String> names) {
+      if (children.isEmpty()) {
+        return new Node(sym, Node.NO_NAMES, Node.NO_CHILDREN);
+      }
+      String[] childNames = children.keySet().toArray(new String[0]);
+      Arrays.sort(childNames);
+      Node[] frozen = new Node[childNames.length];
+      for (int i = 0; i < childNames.length; i++) {
+        String name = childNames[i];
+        frozen[i] = children.get(name).freeze(names);
+        String shared = names.putIfAbsent(name, name);
+        if (shared != null) {
+          childNames[i] = shared;
+        }
+      }
+      return new Node(sym, childNames, frozen);
+    }
   }
 
   /** A builder for {@link TopLevelIndex}es. */
   public static class Builder {
 
     public TopLevelIndex build() {
-      // Freeze the index. The immutability of nodes is enforced by making insert private, doing
-      // a deep copy here isn't necessary.
-      return new SimpleTopLevelIndex(root);
+      // Freeze the index into its compact representation.
+      return new SimpleTopLevelIndex(root.freeze(new HashMap<String, String>()));
     }
 
     /** The root of the lookup tree, effectively the package node of the default package. */
-    final Node root = new Node(null);
+    final MutableNode root = new MutableNode(null);
 
     /** Inserts a {@link ClassSymbol} into the index, creating any needed packages. */
     public boolean insert(ClassSymbol sym) {
       Iterator<String> it = Splitter.on('/').split(sym.toString()).iterator();
-      Node curr = root;
+      MutableNode curr = root;
       while (it.hasNext()) {
         String simpleName = it.next();
         // if this is the last simple name in the qualified name of the top-level class being
@@ -16,6 +16,8 @@
 
 package com.google.turbine.binder.sym;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.errorprone.annotations.Immutable;
 
 /**
@@ -24,11 +26,17 @@ import com.google.errorprone.annotations.Immutable;
  * <p>Turbine identifies classes by their binary string name. Symbols are immutable and do not hold
  * any semantic information: the information that has been determined at the current phase (e.g.
  * about super-types and members) is held externally.
+ *
+ * <p>Binary names are interned, so all symbols for the same class share a name instance and can be
+ * compared by identity without looking at the characters of the name. Names are held weakly, and
+ * are dropped from the table once no symbol refers to them.
  */
-// TODO(cushon): investigate performance impact of interning names/symbols
 @Immutable
 public class ClassSymbol implements Symbol {
 
+  /** The symbol table, which maps each binary name to its canonical instance. */
+  private static final Interner<String> NAMES = Interners.newWeakInterner();
+
   public static final ClassSymbol OBJECT = new ClassSymbol("java/lang/Object");
   public static final ClassSymbol STRING = new ClassSymbol("java/lang/String");
   public static final ClassSymbol ENUM = new ClassSymbol("java/lang/Enum");
@@ -37,7 +45,7 @@ public class ClassSymbol implements Symbol {
   private final String className;
 
   public ClassSymbol(String className) {
-    this.className = className;
+    this.className = NAMES.intern(className);
   }
 
   @Override
@@ -52,7 +60,8 @@ public class ClassSymbol implements Symbol {
 
   @Override
   public boolean equals(Object o) {
-    return o instanceof ClassSymbol && className.equals(((ClassSymbol) o).className);
+    // names are interned
+    return o == this || (o instanceof ClassSymbol && className == ((ClassSymbol) o).className);
   }
 
   /** The JVMS 4.2.1 binary name of the class. */
@@ -18,63 +18,117 @@ package com.google.turbine.bytecode;
 
 import static com.google.common.base.Verify.verify;
 
-import com.google.common.io.ByteArrayDataInput;
-import com.google.common.io.ByteStreams;
-import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 
-/** A {@link ByteArrayDataInput} wrapper that tracks the current byte array index. */
+/**
+ * Reads big-endian data from a {@link ByteBuffer}, tracking the current index.
+ *
+ * <p>Reads use absolute indices into the buffer, so the buffer can be a view of memory that is
+ * shared with other readers (e.g. a slice of a memory-mapped jar file) and is never copied.
+ */
 public class ByteReader {
 
-  private final byte[] bytes;
-  private final IndexedByteArrayInputStream indexed;
-  private final ByteArrayDataInput input;
+  private final ByteBuffer buf;
+  private int pos;
 
   public ByteReader(byte[] bytes, int pos) {
-    this.bytes = bytes;
-    this.indexed = new IndexedByteArrayInputStream(bytes, pos, bytes.length);
-    this.input = ByteStreams.newDataInput(indexed);
+    this(ByteBuffer.wrap(bytes), pos);
+  }
+
+  /**
+   * Creates a reader for the given big-endian buffer, starting at the given absolute index. The
+   * buffer's position and limit are not modified.
+   */
+  public ByteReader(ByteBuffer buf, int pos) {
+    this.buf = buf;
+    this.pos = pos;
   }
 
-  public ByteArrayDataInput seek(int i) {
-    return ByteStreams.newDataInput(bytes, i);
+  /** Returns a new reader for the same data, starting at the given index. */
+  public ByteReader seek(int i) {
+    return new ByteReader(buf, i);
   }
 
   /** The position in the input buffer. */
   public int pos() {
-    return indexed.pos();
+    return pos;
   }
 
   /** Reads an unsigned 8-bit integer. */
   public int u1() {
-    return input.readUnsignedByte();
+    int result = buf.get(pos) & 0xff;
+    pos += 1;
+    return result;
   }
 
   /** Reads an unsigned 16-bit integer in big-endian byte order. */
   public int u2() {
-    return input.readUnsignedShort();
+    int result = buf.getShort(pos) & 0xffff;
+    pos += 2;
+    return result;
   }
 
   /** Reads an unsigned 32-bit integer in big-endian byte order. */
   public int u4() {
-    return input.readInt();
+    int result = buf.getInt(pos);
+    pos += 4;
+    return result;
   }
 
-  /** Skips n bytes of input. */
-  public void skip(int n) {
-    int skipped = input.skipBytes(n);
-    // this is only used with {@link ByteArrayInputStream}.
-    verify(skipped == n, "wanted %s, read %s", n, skipped);
+  /** Reads a signed 64-bit integer in big-endian byte order. */
+  public long u8() {
+    long result = buf.getLong(pos);
+    pos += 8;
+    return result;
   }
 
-  /** {@link #pos} is protected in {@link java.io.ByteArrayInputStream}. */
-  static class IndexedByteArrayInputStream extends ByteArrayInputStream {
-
-    IndexedByteArrayInputStream(byte[] buf, int offset, int length) {
-      super(buf, offset, length);
+  /**
+   * Decodes a string of the given length in bytes at the given index, in the JVMS 4.4.7 modified
+   * UTF-8 encoding.
+   *
+   * @throws AssertionError if the data is not valid modified UTF-8
+   */
+  static String decodeUtf8(ByteBuffer buf, int pos, int length) {
+    int end = pos + length;
+    verify(end <= buf.limit(), "wanted %s, have %s", length, buf.limit() - pos);
+    char[] chars = new char[length];
+    int n = 0;
+    while (pos < end) {
+      int b = buf.get(pos) & 0xff;
+      if (b < 0x80) {
+        chars[n++] = (char) b;
+        pos += 1;
+      } else if ((b & 0xe0) == 0xc0 && pos + 1 < end) {
+        chars[n++] = (char) (((b & 0x1f) << 6) | continuation(buf, pos + 1));
+        pos += 2;
+      } else if ((b & 0xf0) == 0xe0 && pos + 2 < end) {
+        int c1 = continuation(buf, pos + 1);
+        int c2 = continuation(buf, pos + 2);
+        chars[n++] = (char) (((b & 0x0f) << 12) | (c1 << 6) | c2);
+        pos += 3;
+      } else {
+        throw new AssertionError(String.format("bad utf8 at offset %d", pos));
+      }
     }
+    return new String(chars, 0, n);
+  }
 
-    int pos() {
-      return pos;
+  private static int continuation(ByteBuffer buf, int i) {
+    int b = buf.get(i) & 0xff;
+    if ((b & 0xc0) != 0x80) {
+      throw new AssertionError(String.format("bad utf8 at offset %d", i));
     }
+    return b & 0x3f;
+  }
+
+  /** The underlying buffer. */
+  ByteBuffer buffer() {
+    return buf;
+  }
+
+  /** Skips n bytes of input. */
+  public void skip(int n) {
+    verify(n >= 0 && pos + n <= buf.limit(), "wanted %s, have %s", n, buf.limit() - pos);
+    pos += n;
   }
 }
@@ -18,6 +18,8 @@ package com.google.turbine.bytecode;
 
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.turbine.bytecode.ClassFile.AnnotationInfo.ElementValue;
 import com.google.turbine.model.Const;
@@ -35,10 +37,10 @@ public class ClassFile {
   private final String name;
   private final String signature;
   private final String superClass;
-  private final List<String> interfaces;
-  private final List<MethodInfo> methods;
-  private final List<FieldInfo> fields;
-  private final List<AnnotationInfo> annotations;
+  private final Supplier<List<String>> interfaces;
+  private final Supplier<List<MethodInfo>> methods;
+  private final Supplier<List<FieldInfo>> fields;
+  private final Supplier<List<AnnotationInfo>> annotations;
   private final List<InnerClass> innerClasses;
   private final ImmutableList<TypeAnnotationInfo> typeAnnotations;
   @Nullable private final ModuleInfo module;
@@ -55,6 +57,36 @@ public class ClassFile {
       List<InnerClass> innerClasses,
       ImmutableList<TypeAnnotationInfo> typeAnnotations,
       @Nullable ModuleInfo module) {
+    this(
+        access,
+        name,
+        signature,
+        superClass,
+        Suppliers.ofInstance(interfaces),
+        Suppliers.ofInstance(methods),
+        Suppliers.ofInstance(fields),
+        Suppliers.ofInstance(annotations),
+        innerClasses,
+        typeAnnotations,
+        module);
+  }
+
+  /**
+   * Creates a class file whose interfaces, members and annotations are computed on demand, see
+   * {@link ClassReader}.
+   */
+  ClassFile(
+      int access,
+      String name,
+      String signature,
+      String superClass,
+      Supplier<List<String>> interfaces,
+      Supplier<List<MethodInfo>> methods,
+      Supplier<List<FieldInfo>> fields,
+      Supplier<List<AnnotationInfo>> annotations,
+      List<InnerClass> innerClasses,
+      ImmutableList<TypeAnnotationInfo> typeAnnotations,
+      @Nullable ModuleInfo module) {
     this.access = access;
     this.name = name;
     this.signature = signature;
@@ -90,22 +122,22 @@ public class ClassFile {
 
   /** The direct superinterfaces. */
   public List<String> interfaces() {
-    return interfaces;
+    return interfaces.get();
   }
 
   /** Methods declared by this class or interfaces type. */
   public List<MethodInfo> methods() {
-    return methods;
+    return methods.get();
   }
 
   /** Fields declared by this class or interfaces type. */
   public List<FieldInfo> fields() {
-    return fields;
+    return fields.get();
   }
 
   /** Declaration annotations of the class. */
   public List<AnnotationInfo> annotations() {
-    return annotations;
+    return annotations.get();
   }
 
   /** Inner class information. */
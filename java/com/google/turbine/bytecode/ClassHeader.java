@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.bytecode;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import javax.annotation.Nullable;
+
+/**
+ * The parts of a JVMS §4.1 ClassFile that are needed to resolve names: the class's access flags,
+ * supertypes, and its entries in the InnerClasses attribute.
+ */
+public class ClassHeader {
+
+  private final int access;
+  private final String name;
+  @Nullable private final String superName;
+  private final ImmutableList<String> interfaces;
+  @Nullable private final ClassFile.InnerClass self;
+  private final ImmutableMap<String, String> children;
+
+  public ClassHeader(
+      int access,
+      String name,
+      @Nullable String superName,
+      ImmutableList<String> interfaces,
+      @Nullable ClassFile.InnerClass self,
+      ImmutableMap<String, String> children) {
+    this.access = access;
+    this.name = name;
+    this.superName = superName;
+    this.interfaces = interfaces;
+    this.self = self;
+    this.children = children;
+  }
+
+  /** Class access and property flags. */
+  public int access() {
+    return access;
+  }
+
+  /** The name of the class or interface. */
+  public String name() {
+    return name;
+  }
+
+  /** The super class. */
+  @Nullable
+  public String superName() {
+    return superName;
+  }
+
+  /** The direct superinterfaces. */
+  public ImmutableList<String> interfaces() {
+    return interfaces;
+  }
+
+  /** The InnerClasses entry for this class, if it is a member class. */
+  @Nullable
+  public ClassFile.InnerClass self() {
+    return self;
+  }
+
+  /** The binary names of the member classes of this class, by simple name. */
+  public ImmutableMap<String, String> children() {
+    return children;
+  }
+}
@@ -16,6 +16,10 @@
 
 package com.google.turbine.bytecode;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.turbine.bytecode.ClassFile.AnnotationInfo.ElementValue;
@@ -29,13 +33,21 @@ import com.google.turbine.bytecode.ClassFile.ModuleInfo.RequireInfo;
 import com.google.turbine.bytecode.ClassFile.ModuleInfo.UseInfo;
 import com.google.turbine.model.Const;
 import com.google.turbine.model.TurbineFlag;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nullable;
 
-/** A JVMS §4 class file reader. */
+/**
+ * A JVMS §4 class file reader.
+ *
+ * <p>Reading a class file only decodes the class header and the attributes needed to resolve
+ * names (the signature, inner classes, and module attributes). Interfaces, fields, methods and
+ * annotations are skipped over and decoded the first time they are requested, since most classes
+ * on the classpath are only used for name resolution.
+ */
 public class ClassReader {
 
   /** Reads the given bytes into an {@link ClassFile}. */
@@ -46,15 +58,43 @@ public class ClassReader {
 
   /** Reads the given bytes into an {@link ClassFile}. */
   public static ClassFile read(@Nullable String path, byte[] bytes) {
-    return new ClassReader(path, bytes).read();
+    return read(path, ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Reads the remaining bytes in the given buffer into an {@link ClassFile}. The buffer is not
+   * copied, and parts of it may be read later when the class file's members are requested, so it
+   * must not be modified.
+   */
+  public static ClassFile read(@Nullable String path, ByteBuffer bytes) {
+    return new ClassReader(path, bytes.slice(), 0).read();
+  }
+
+  // Attribute names, which are compared against the constant pool without decoding it.
+  private static final byte[] CONSTANT_VALUE = "ConstantValue".getBytes(UTF_8);
+  private static final byte[] EXCEPTIONS = "Exceptions".getBytes(UTF_8);
+  private static final byte[] INNER_CLASSES = "InnerClasses".getBytes(UTF_8);
+  private static final byte[] MODULE = "Module".getBytes(UTF_8);
+  private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS =
+      "RuntimeVisibleAnnotations".getBytes(UTF_8);
+  private static final byte[] SIGNATURE = "Signature".getBytes(UTF_8);
+
+  /**
+   * Reads the parts of the class file in the given buffer that are needed to resolve names, without
+   * decoding its members or other attributes.
+   */
+  public static ClassHeader readHeader(@Nullable String path, ByteBuffer bytes) {
+    return new ClassReader(path, bytes.slice(), 0).readHeader();
   }
 
   @Nullable private final String path;
+  private final ByteBuffer bytes;
   private final ByteReader reader;
 
-  private ClassReader(@Nullable String path, byte[] bytes) {
+  private ClassReader(@Nullable String path, ByteBuffer bytes, int pos) {
     this.path = path;
-    this.reader = new ByteReader(bytes, 0);
+    this.bytes = bytes;
+    this.reader = new ByteReader(bytes, pos);
   }
 
   @CheckReturnValue
@@ -67,7 +107,8 @@ public class ClassReader {
     return new AssertionError(sb.toString());
   }
 
-  private ClassFile read() {
+  /** Reads the magic number, version, and constant pool. */
+  private ConstantPoolReader readConstantPool() {
     int magic = reader.u4();
     if (magic != 0xcafebabe) {
       throw error("bad magic: 0x%x", path, magic);
@@ -77,7 +118,41 @@ public class ClassReader {
     if (majorVersion < 45 || majorVersion > 53) {
       throw error("bad version: %d.%d", majorVersion, minorVersion);
     }
-    ConstantPoolReader constantPool = ConstantPoolReader.readConstantPool(reader);
+    return ConstantPoolReader.readConstantPool(reader);
+  }
+
+  private ClassHeader readHeader() {
+    ConstantPoolReader constantPool = readConstantPool();
+    int accessFlags = reader.u2();
+    String thisClass = constantPool.classInfo(reader.u2());
+    int superClassIndex = reader.u2();
+    String superClass = superClassIndex != 0 ? constantPool.classInfo(superClassIndex) : null;
+    ImmutableList<String> interfaces =
+        ImmutableList.copyOf(readInterfaces(constantPool, reader.u2()));
+    skipMembers(); // fields
+    skipMembers(); // methods
+    ClassFile.InnerClass self = null;
+    ImmutableMap.Builder<String, String> children = ImmutableMap.builder();
+    int attributesCount = reader.u2();
+    for (int j = 0; j < attributesCount; j++) {
+      if (!constantPool.utf8Equals(reader.u2(), INNER_CLASSES)) {
+        reader.skip(reader.u4());
+        continue;
+      }
+      for (ClassFile.InnerClass inner : readInnerClasses(constantPool, thisClass)) {
+        if (self == null && thisClass.equals(inner.innerClass())) {
+          self = inner;
+        }
+        if (thisClass.equals(inner.outerClass())) {
+          children.put(inner.innerName(), inner.innerClass());
+        }
+      }
+    }
+    return new ClassHeader(accessFlags, thisClass, superClass, interfaces, self, children.build());
+  }
+
+  private ClassFile read() {
+    ConstantPoolReader constantPool = readConstantPool();
     int accessFlags = reader.u2();
     String thisClass = constantPool.classInfo(reader.u2());
     int superClassIndex = reader.u2();
@@ -88,39 +163,68 @@ public class ClassReader {
       superClass = null;
     }
     int interfacesCount = reader.u2();
-    List<String> interfaces = new ArrayList<>();
-    for (int i = 0; i < interfacesCount; i++) {
-      interfaces.add(constantPool.classInfo(reader.u2()));
-    }
+    Supplier<List<String>> interfaces =
+        lazily(
+            reader.pos(),
+            new Section<List<String>>() {
+              @Override
+              public List<String> read(ClassReader section) {
+                return section.readInterfaces(constantPool, interfacesCount);
+              }
+            });
+    reader.skip(interfacesCount * 2);
 
-    List<ClassFile.FieldInfo> fieldinfos = readFields(constantPool);
+    Supplier<List<ClassFile.FieldInfo>> fieldinfos =
+        lazily(
+            reader.pos(),
+            new Section<List<ClassFile.FieldInfo>>() {
+              @Override
+              public List<ClassFile.FieldInfo> read(ClassReader section) {
+                return section.readFields(constantPool);
+              }
+            });
+    skipMembers();
 
-    List<ClassFile.MethodInfo> methodinfos = readMethods(constantPool);
+    Supplier<List<ClassFile.MethodInfo>> methodinfos =
+        lazily(
+            reader.pos(),
+            new Section<List<ClassFile.MethodInfo>>() {
+              @Override
+              public List<ClassFile.MethodInfo> read(ClassReader section) {
+                return section.readMethods(constantPool);
+              }
+            });
+    skipMembers();
 
     String signature = null;
     List<ClassFile.InnerClass> innerclasses = Collections.emptyList();
-    List<ClassFile.AnnotationInfo> annotations = Collections.emptyList();
+    Supplier<List<ClassFile.AnnotationInfo>> annotations =
+        Suppliers.<List<ClassFile.AnnotationInfo>>ofInstance(ImmutableList.of());
     ClassFile.ModuleInfo module = null;
     int attributesCount = reader.u2();
     for (int j = 0; j < attributesCount; j++) {
       int attributeNameIndex = reader.u2();
-      String name = constantPool.utf8(attributeNameIndex);
-      switch (name) {
-        case "RuntimeVisibleAnnotations":
-          annotations = readAnnotations(constantPool, accessFlags);
-          break;
-        case "Signature":
-          signature = readSignature(constantPool);
-          break;
-        case "InnerClasses":
-          innerclasses = readInnerClasses(constantPool, thisClass);
-          break;
-        case "Module":
-          module = readModule(constantPool);
-          break;
-        default:
-          reader.skip(reader.u4());
-          break;
+      if (constantPool.utf8Equals(attributeNameIndex, RUNTIME_VISIBLE_ANNOTATIONS)) {
+        if ((accessFlags & TurbineFlag.ACC_ANNOTATION) == TurbineFlag.ACC_ANNOTATION) {
+          annotations =
+              lazily(
+                  reader.pos(),
+                  new Section<List<ClassFile.AnnotationInfo>>() {
+                    @Override
+                    public List<ClassFile.AnnotationInfo> read(ClassReader section) {
+                      return section.readAnnotations(constantPool, accessFlags);
+                    }
+                  });
+        }
+        reader.skip(reader.u4());
+      } else if (constantPool.utf8Equals(attributeNameIndex, SIGNATURE)) {
+        signature = readSignature(constantPool);
+      } else if (constantPool.utf8Equals(attributeNameIndex, INNER_CLASSES)) {
+        innerclasses = readInnerClasses(constantPool, thisClass);
+      } else if (constantPool.utf8Equals(attributeNameIndex, MODULE)) {
+        module = readModule(constantPool);
+      } else {
+        reader.skip(reader.u4());
       }
     }
 
@@ -138,6 +242,44 @@ public class ClassReader {
         module);
   }
 
+  /** Reads part of a class file, starting at a previously recorded offset. */
+  private interface Section<T> {
+    T read(ClassReader section);
+  }
+
+  /** Returns a supplier that reads the section at the given offset the first time it is called. */
+  private <T> Supplier<T> lazily(final int pos, final Section<T> section) {
+    return Suppliers.memoize(
+        new Supplier<T>() {
+          @Override
+          public T get() {
+            return section.read(new ClassReader(path, bytes, pos));
+          }
+        });
+  }
+
+  /** Skips over JVMS 4.5 field_infos or JVMS 4.6 method_infos. */
+  private void skipMembers() {
+    int membersCount = reader.u2();
+    for (int i = 0; i < membersCount; i++) {
+      reader.skip(6); // access_flags, name_index, descriptor_index
+      int attributesCount = reader.u2();
+      for (int j = 0; j < attributesCount; j++) {
+        reader.skip(2); // attribute_name_index
+        reader.skip(reader.u4());
+      }
+    }
+  }
+
+  /** Reads the direct superinterfaces of a class. */
+  private List<String> readInterfaces(ConstantPoolReader constantPool, int interfacesCount) {
+    List<String> interfaces = new ArrayList<>();
+    for (int i = 0; i < interfacesCount; i++) {
+      interfaces.add(constantPool.classInfo(reader.u2()));
+    }
+    return interfaces;
+  }
+
   /** Reads a JVMS 4.7.9 Signature attribute. */
   private String readSignature(ConstantPoolReader constantPool) {
     String signature;
@@ -381,17 +523,13 @@ public class ClassReader {
       String signature = null;
       ImmutableList<String> exceptions = ImmutableList.of();
       for (int j = 0; j < attributesCount; j++) {
-        String attributeName = constantPool.utf8(reader.u2());
-        switch (attributeName) {
-          case "Exceptions":
-            exceptions = readExceptions(constantPool);
-            break;
-          case "Signature":
-            signature = readSignature(constantPool);
-            break;
-          default:
-            reader.skip(reader.u4());
-            break;
+        int attributeNameIndex = reader.u2();
+        if (constantPool.utf8Equals(attributeNameIndex, EXCEPTIONS)) {
+          exceptions = readExceptions(constantPool);
+        } else if (constantPool.utf8Equals(attributeNameIndex, SIGNATURE)) {
+          signature = readSignature(constantPool);
+        } else {
+          reader.skip(reader.u4());
         }
       }
       methods.add(
@@ -434,15 +572,11 @@ public class ClassReader {
       int attributesCount = reader.u2();
       Const.Value value = null;
       for (int j = 0; j < attributesCount; j++) {
-        String attributeName = constantPool.utf8(reader.u2());
-        switch (attributeName) {
-          case "ConstantValue":
-            reader.u4(); // length
-            value = constantPool.constant(reader.u2());
-            break;
-          default:
-            reader.skip(reader.u4());
-            break;
+        if (constantPool.utf8Equals(reader.u2(), CONSTANT_VALUE)) {
+          reader.u4(); // length
+          value = constantPool.constant(reader.u2());
+        } else {
+          reader.skip(reader.u4());
         }
       }
       fields.add(
@@ -16,7 +16,6 @@
 
 package com.google.turbine.bytecode;
 
-import com.google.common.io.ByteArrayDataInput;
 import com.google.turbine.model.Const;
 
 /** A JVMS §4.4 constant pool reader. */
@@ -104,44 +103,59 @@ public class ConstantPoolReader {
 
   /** Reads the CONSTANT_Class_info at the given index. */
   public String classInfo(int index) {
-    ByteArrayDataInput reader = byteReader.seek(constantPool[index - 1]);
-    byte tag = reader.readByte();
+    ByteReader reader = byteReader.seek(constantPool[index - 1]);
+    int tag = reader.u1();
     if (tag != CONSTANT_CLASS) {
       throw new AssertionError(String.format("bad tag: %x", tag));
     }
-    int nameIndex = reader.readUnsignedShort();
+    int nameIndex = reader.u2();
     return utf8(nameIndex);
   }
 
   /** Reads the CONSTANT_Utf8_info at the given index. */
   public String utf8(int index) {
-    ByteArrayDataInput reader = byteReader.seek(constantPool[index - 1]);
-    byte tag = reader.readByte();
+    ByteReader reader = byteReader.seek(constantPool[index - 1]);
+    int tag = reader.u1();
     if (tag != CONSTANT_UTF8) {
       throw new AssertionError(String.format("bad tag: %x", tag));
     }
-    return reader.readUTF();
+    int length = reader.u2();
+    return Utf8Table.get(reader.buffer(), reader.pos(), length);
+  }
+
+  /**
+   * Returns true if the CONSTANT_Utf8_info at the given index has the given modified UTF-8
+   * encoding, without decoding it.
+   */
+  boolean utf8Equals(int index, byte[] bytes) {
+    ByteReader reader = byteReader.seek(constantPool[index - 1]);
+    int tag = reader.u1();
+    if (tag != CONSTANT_UTF8) {
+      throw new AssertionError(String.format("bad tag: %x", tag));
+    }
+    int length = reader.u2();
+    return Utf8Table.equals(reader.buffer(), reader.pos(), length, bytes);
   }
 
   /** Reads the CONSTANT_Module_info at the given index. */
   public String moduleInfo(int index) {
-    ByteArrayDataInput reader = byteReader.seek(constantPool[index - 1]);
-    byte tag = reader.readByte();
+    ByteReader reader = byteReader.seek(constantPool[index - 1]);
+    int tag = reader.u1();
     if (tag != CONSTANT_MODULE) {
       throw new AssertionError(String.format("bad tag: %x", tag));
     }
-    int nameIndex = reader.readUnsignedShort();
+    int nameIndex = reader.u2();
     return utf8(nameIndex);
   }
 
   /** Reads the CONSTANT_Package_info at the given index. */
   public String packageInfo(int index) {
-    ByteArrayDataInput reader = byteReader.seek(constantPool[index - 1]);
-    byte tag = reader.readByte();
+    ByteReader reader = byteReader.seek(constantPool[index - 1]);
+    int tag = reader.u1();
     if (tag != CONSTANT_PACKAGE) {
       throw new AssertionError(String.format("bad tag: %x", tag));
     }
-    int nameIndex = reader.readUnsignedShort();
+    int nameIndex = reader.u2();
     return utf8(nameIndex);
   }
 
@@ -150,19 +164,19 @@ public class ConstantPoolReader {
    * CONSTANT_Integer_info, CONSTANT_Float_info, CONSTANT_Long_info, or CONSTANT_Double_info.
    */
   Const.Value constant(int index) {
-    ByteArrayDataInput reader = byteReader.seek(constantPool[index - 1]);
-    byte tag = reader.readByte();
+    ByteReader reader = byteReader.seek(constantPool[index - 1]);
+    int tag = reader.u1();
     switch (tag) {
       case CONSTANT_LONG:
-        return new Const.LongValue(reader.readLong());
+        return new Const.LongValue(reader.u8());
       case CONSTANT_FLOAT:
-        return new Const.FloatValue(reader.readFloat());
+        return new Const.FloatValue(Float.intBitsToFloat(reader.u4()));
       case CONSTANT_DOUBLE:
-        return new Const.DoubleValue(reader.readDouble());
+        return new Const.DoubleValue(Double.longBitsToDouble(reader.u8()));
       case CONSTANT_INTEGER:
-        return new Const.IntValue(reader.readInt());
+        return new Const.IntValue(reader.u4());
       case CONSTANT_STRING:
-        return new Const.StringValue(utf8(reader.readUnsignedShort()));
+        return new Const.StringValue(utf8(reader.u2()));
       default:
         throw new AssertionError(String.format("bad tag: %x", tag));
     }
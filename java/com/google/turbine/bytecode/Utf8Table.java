@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.bytecode;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A process-wide table of strings decoded from JVMS 4.4.7 CONSTANT_Utf8_info entries, keyed by
+ * their encoded bytes.
+ *
+ * <p>The same names and descriptors (e.g. {@code java/lang/Object}) appear in the constant pools of
+ * most class files, so decoded strings are shared between class files, and a hit doesn't need to
+ * decode anything. The table is bounded: it has a fixed number of slots and entries that collide
+ * replace each other, and long strings aren't cached.
+ */
+final class Utf8Table {
+
+  /** The number of slots in the table, which must be a power of two. */
+  private static final int SIZE = 1 << 14;
+
+  /** The length in bytes of the longest string that is cached. */
+  private static final int MAX_LENGTH = 128;
+
+  private static final AtomicReferenceArray<Entry> TABLE = new AtomicReferenceArray<>(SIZE);
+
+  private static class Entry {
+    final byte[] bytes;
+    final String value;
+
+    Entry(byte[] bytes, String value) {
+      this.bytes = bytes;
+      this.value = value;
+    }
+  }
+
+  /** Returns the string with the given modified UTF-8 encoding at the given index in the buffer. */
+  static String get(ByteBuffer buf, int pos, int length) {
+    if (length > MAX_LENGTH) {
+      return ByteReader.decodeUtf8(buf, pos, length);
+    }
+    int hash = length;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + buf.get(pos + i);
+    }
+    int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+    Entry entry = TABLE.get(slot);
+    if (entry != null && equals(buf, pos, length, entry.bytes)) {
+      return entry.value;
+    }
+    String value = ByteReader.decodeUtf8(buf, pos, length);
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buf.get(pos + i);
+    }
+    TABLE.set(slot, new Entry(bytes, value));
+    return value;
+  }
+
+  /** Returns true if the given region of the buffer contains exactly the given bytes. */
+  static boolean equals(ByteBuffer buf, int pos, int length, byte[] bytes) {
+    if (length != bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (buf.get(pos + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Utf8Table() {}
+}
@@ -20,10 +20,13 @@ import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.turbine.binder.DisambiguateTypeAnnotations.groupRepeated;
 
 import com.google.common.base.Function;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.turbine.binder.bound.AnnotationValue;
 import com.google.turbine.binder.bound.ClassValue;
 import com.google.turbine.binder.bound.EnumConstantValue;
@@ -80,6 +83,10 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.annotation.Nullable;
 
 /** Lowering from bound classes to bytecode. */
@@ -111,12 +118,43 @@ public class Lower {
       ImmutableMap<ClassSymbol, SourceTypeBoundClass> units,
       ImmutableList<ModuleInfo> modules,
       Env<ClassSymbol, BytecodeBoundClass> classpath) {
+    return lowerAll(units, modules, classpath, MoreExecutors.newDirectExecutorService());
+  }
+
+  /**
+   * Lowers all given classes to bytecode, using the given executor to lower classes in parallel.
+   *
+   * <p>Each class records the symbols it references in its own set, and the results are merged in
+   * the iteration order of {@code units}, so the output is the same as lowering serially.
+   */
+  public static Lowered lowerAll(
+      ImmutableMap<ClassSymbol, SourceTypeBoundClass> units,
+      ImmutableList<ModuleInfo> modules,
+      Env<ClassSymbol, BytecodeBoundClass> classpath,
+      ExecutorService executor) {
     CompoundEnv<ClassSymbol, TypeBoundClass> env =
         CompoundEnv.<ClassSymbol, TypeBoundClass>of(classpath).append(new SimpleEnv<>(units));
+    List<Future<byte[]>> bytes = new ArrayList<>();
+    List<Set<ClassSymbol>> classSymbols = new ArrayList<>();
+    for (ClassSymbol sym : units.keySet()) {
+      Set<ClassSymbol> referenced = new LinkedHashSet<>();
+      classSymbols.add(referenced);
+      bytes.add(
+          executor.submit(
+              new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                  return lower(units.get(sym), env, sym, referenced);
+                }
+              }));
+    }
     ImmutableMap.Builder<String, byte[]> result = ImmutableMap.builder();
     Set<ClassSymbol> symbols = new LinkedHashSet<>();
+    int i = 0;
     for (ClassSymbol sym : units.keySet()) {
-      result.put(sym.binaryName(), lower(units.get(sym), env, sym, symbols));
+      result.put(sym.binaryName(), getDone(bytes.get(i)));
+      symbols.addAll(classSymbols.get(i));
+      i++;
     }
     if (modules.size() == 1) {
       // single module mode: the module-info.class file is at the root
@@ -131,6 +169,15 @@ public class Lower {
     return new Lowered(result.build(), ImmutableSet.copyOf(symbols));
   }
 
+  private static <T> T getDone(Future<T> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new AssertionError(e.getCause());
+    }
+  }
+
   /** Lowers a class to bytecode. */
   public static byte[] lower(
       SourceTypeBoundClass info,
@@ -19,49 +19,76 @@ package com.google.turbine.main;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.hash.Hashing;
+import com.google.common.io.Closer;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.turbine.binder.Binder;
 import com.google.turbine.binder.Binder.BindingResult;
 import com.google.turbine.binder.ClassPath;
 import com.google.turbine.binder.ClassPathBinder;
+import com.google.turbine.binder.ClassPathCache;
+import com.google.turbine.binder.ClassPathIndex;
 import com.google.turbine.binder.CtSymClassBinder;
 import com.google.turbine.binder.JimageClassBinder;
 import com.google.turbine.deps.Dependencies;
 import com.google.turbine.deps.Transitive;
 import com.google.turbine.diag.SourceFile;
+import com.google.turbine.diag.TurbineError;
 import com.google.turbine.lower.Lower;
 import com.google.turbine.lower.Lower.Lowered;
 import com.google.turbine.options.TurbineOptions;
 import com.google.turbine.options.TurbineOptionsParser;
 import com.google.turbine.parse.Parser;
+import com.google.turbine.profile.Profiler;
 import com.google.turbine.proto.DepsProto;
+import com.google.turbine.proto.WorkerProtocol.WorkRequest;
+import com.google.turbine.proto.WorkerProtocol.WorkResponse;
 import com.google.turbine.tree.Tree.CompUnit;
 import com.google.turbine.zip.Zip;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 
 /** Main entry point for the turbine CLI. */
 public class Main {
 
   private static final int BUFFER_SIZE = 65536;
 
+  private static final byte[] JAVA_SUFFIX = ".java".getBytes(UTF_8);
+
   // These attributes are used by JavaBuilder, Turbine, and ijar.
   // They must all be kept in sync.
   static final String MANIFEST_DIR = "META-INF/";
@@ -69,117 +96,361 @@ public class Main {
   static final Attributes.Name TARGET_LABEL = new Attributes.Name("Target-Label");
   static final Attributes.Name INJECTING_RULE_KIND = new Attributes.Name("Injecting-Rule-Kind");
 
+  /** The startup flag Bazel passes to tools that support running as a persistent worker. */
+  static final String PERSISTENT_WORKER_FLAG = "--persistent_worker";
+
   public static void main(String[] args) throws IOException {
+    if (Arrays.asList(args).contains(PERSISTENT_WORKER_FLAG)) {
+      PrintStream stdout = System.out;
+      // stdout is reserved for work responses
+      System.setOut(System.err);
+      runPersistentWorker(System.in, stdout);
+      return;
+    }
     compile(args);
   }
 
+  /**
+   * Runs as a Bazel persistent worker: reads length-delimited {@link WorkRequest}s from {@code in}
+   * and writes a {@link WorkResponse} for each of them to {@code out}, until {@code in} is
+   * exhausted. All requests are compiled in the current process, so the JIT stays warm and platform
+   * classpaths and bound classpath jars are shared across requests.
+   */
+  static void runPersistentWorker(InputStream in, OutputStream out) throws IOException {
+    ClassPathCache classPathCache = new ClassPathCache(Runtime.getRuntime().maxMemory() / 4);
+    while (true) {
+      WorkRequest request = WorkRequest.parseDelimitedFrom(in);
+      if (request == null) {
+        return;
+      }
+      StringWriter output = new StringWriter();
+      int exitCode;
+      try (PrintWriter pw = new PrintWriter(output)) {
+        exitCode = processRequest(request.getArgumentsList(), classPathCache, pw);
+      }
+      WorkResponse.newBuilder()
+          .setExitCode(exitCode)
+          .setOutput(output.toString())
+          .setRequestId(request.getRequestId())
+          .build()
+          .writeDelimitedTo(out);
+      out.flush();
+    }
+  }
+
+  /** Compiles a single work request, and returns its exit code. */
+  private static int processRequest(
+      List<String> args, ClassPathCache classPathCache, PrintWriter output) {
+    try {
+      if (!compile(TurbineOptionsParser.parse(args), classPathCache)) {
+        output.println("error: annotation processing is not supported, no output was written");
+        return 1;
+      }
+      return 0;
+    } catch (TurbineError e) {
+      output.println(e.getMessage());
+      return 1;
+    } catch (VirtualMachineError e) {
+      throw e;
+    } catch (Throwable t) {
+      // report unexpected failures for the current request, and keep serving later requests
+      t.printStackTrace(output);
+      return 1;
+    }
+  }
+
   public static boolean compile(String[] args) throws IOException {
     TurbineOptions options = TurbineOptionsParser.parse(Arrays.asList(args));
     return compile(options);
   }
 
   public static boolean compile(TurbineOptions options) throws IOException {
+    return compile(options, /* classPathCache= */ null);
+  }
+
+  /**
+   * Compiles the given options. If a {@link ClassPathCache} is provided, classpath jars are bound
+   * through the cache.
+   */
+  static boolean compile(TurbineOptions options, @Nullable ClassPathCache classPathCache)
+      throws IOException {
     if (!options.processors().isEmpty()) {
       return false;
     }
 
-    ImmutableList<CompUnit> units = parseAll(options);
+    Profiler profiler = options.profile().isPresent() ? Profiler.create() : Profiler.disabled();
+    ExecutorService executor = newExecutor(options.threads());
+    Throwable failure = null;
+    try {
+      try (Profiler.Span span = profiler.start("compile")) {
+        return compile(options, classPathCache, executor, profiler);
+      }
+    } catch (Throwable t) {
+      failure = t;
+      throw t;
+    } finally {
+      executor.shutdownNow();
+      if (options.profile().isPresent()) {
+        try {
+          profiler.write(Paths.get(options.profile().get()));
+        } catch (IOException e) {
+          // don't hide the compilation's own failure
+          if (failure == null) {
+            throw e;
+          }
+          failure.addSuppressed(e);
+        }
+      }
+    }
+  }
 
-    ClassPath bootclasspath = bootclasspath(options);
+  private static boolean compile(
+      TurbineOptions options,
+      @Nullable ClassPathCache classPathCache,
+      ExecutorService executor,
+      Profiler profiler)
+      throws IOException {
+    ImmutableList<CompUnit> units;
+    try (Profiler.Span span = profiler.start("parse")) {
+      units = parseAll(options, executor, profiler);
+    }
 
-    Collection<String> reducedClasspath =
-        Dependencies.reduceClasspath(
-            options.classPath(), options.directJars(), options.depsArtifacts());
-    ClassPath classpath = ClassPathBinder.bindClasspath(toPaths(reducedClasspath));
+    ClassPath bootclasspath;
+    ClassPath classpath;
+    try (Profiler.Span span = profiler.start("bindClasspath")) {
+      bootclasspath = bootclasspath(options, classPathCache);
 
-    BindingResult bound =
-        Binder.bind(units, classpath, bootclasspath, /* moduleVersion=*/ Optional.absent());
+      Collection<String> reducedClasspath =
+          Dependencies.reduceClasspath(
+              options.classPath(), options.directJars(), options.depsArtifacts());
+      classpath = bindClasspath(toPaths(reducedClasspath), classPathCache);
+    }
 
-    // TODO(cushon): parallelize
-    Lowered lowered = Lower.lowerAll(bound.units(), bound.modules(), bound.classPathEnv());
+    BindingResult bound;
+    try (Profiler.Span span = profiler.start("bind")) {
+      bound =
+          Binder.bind(
+              units,
+              classpath,
+              bootclasspath,
+              /* moduleVersion=*/ Optional.absent(),
+              executor,
+              profiler);
+    }
+
+    Lowered lowered;
+    try (Profiler.Span span = profiler.start("lower")) {
+      lowered = Lower.lowerAll(bound.units(), bound.modules(), bound.classPathEnv(), executor);
+    }
 
-    Map<String, byte[]> transitive = Transitive.collectDeps(bootclasspath, bound);
+    Map<String, byte[]> transitive;
+    try (Profiler.Span span = profiler.start("transitiveDeps")) {
+      transitive = Transitive.collectDeps(bootclasspath, bound);
+    }
 
     if (options.outputDeps().isPresent()) {
-      DepsProto.Dependencies deps =
-          Dependencies.collectDeps(options.targetLabel(), bootclasspath, bound, lowered);
-      try (OutputStream os =
-          new BufferedOutputStream(Files.newOutputStream(Paths.get(options.outputDeps().get())))) {
-        deps.writeTo(os);
+      try (Profiler.Span span = profiler.start("collectDeps")) {
+        DepsProto.Dependencies deps =
+            Dependencies.collectDeps(options.targetLabel(), bootclasspath, bound, lowered);
+        try (OutputStream os =
+            new BufferedOutputStream(
+                Files.newOutputStream(Paths.get(options.outputDeps().get())))) {
+          deps.writeTo(os);
+        }
       }
     }
 
-    writeOutput(options, lowered.bytes(), transitive);
+    try (Profiler.Span span = profiler.start("writeOutput")) {
+      writeOutput(options, lowered.bytes(), transitive);
+    }
     return true;
   }
 
-  private static ClassPath bootclasspath(TurbineOptions options) throws IOException {
+  private static ClassPath bindClasspath(
+      ImmutableList<Path> paths, @Nullable ClassPathCache classPathCache) throws IOException {
+    return classPathCache != null
+        ? ClassPathBinder.bindClasspath(paths, classPathCache)
+        : ClassPathBinder.bindClasspath(paths);
+  }
+
+  private static ClassPath bootclasspath(
+      TurbineOptions options, @Nullable ClassPathCache classPathCache) throws IOException {
     // if both --release and --bootclasspath are specified, --release wins
     if (options.release().isPresent() && options.system().isPresent()) {
       throw new IllegalArgumentException("expected at most one of --release and --system");
     }
 
     if (options.release().isPresent()) {
-      String release = options.release().get();
-      if (release.equals(System.getProperty("java.specification.version"))) {
-        // if --release matches the host JDK, use its jimage instead of ct.sym
-        return JimageClassBinder.bindDefault();
-      }
+      return release(options.release().get());
+    }
+
+    if (options.system().isPresent()) {
+      return system(options.system().get());
+    }
+
+    // the bootclasspath might be empty, e.g. when compiling java.lang
+    return bindClasspath(toPaths(options.bootClassPath()), classPathCache);
+  }
+
+  /**
+   * Platform classpaths for {@code --release}, keyed by release. They are backed by files in the
+   * host JDK, so they can be shared by all compilations in the process.
+   */
+  @GuardedBy("Main.class")
+  private static final Map<String, ClassPath> releaseClassPaths = new HashMap<>();
+
+  /**
+   * Platform classpaths for {@code --system}, keyed by the path and modification time of the JDK's
+   * jimage file.
+   */
+  @GuardedBy("Main.class")
+  private static final Map<String, ClassPath> systemClassPaths = new HashMap<>();
+
+  private static synchronized ClassPath release(String release) throws IOException {
+    ClassPath bootclasspath = releaseClassPaths.get(release);
+    if (bootclasspath != null) {
+      return bootclasspath;
+    }
+    if (release.equals(System.getProperty("java.specification.version"))) {
+      // if --release matches the host JDK, use its jimage instead of ct.sym
+      bootclasspath = JimageClassBinder.bindDefault();
+    } else {
       // ... otherwise, search ct.sym for a matching release
-      ClassPath bootclasspath = CtSymClassBinder.bind(release);
+      bootclasspath = CtSymClassBinder.bind(release);
       if (bootclasspath == null) {
         throw new IllegalArgumentException("not a supported release: " + release);
       }
-      return bootclasspath;
     }
+    releaseClassPaths.put(release, bootclasspath);
+    return bootclasspath;
+  }
 
-    if (options.system().isPresent()) {
+  private static synchronized ClassPath system(String javaHome) throws IOException {
+    Path modules = Paths.get(javaHome).resolve("lib/modules");
+    String key =
+        Files.exists(modules) ? modules + "@" + Files.getLastModifiedTime(modules) : javaHome;
+    ClassPath bootclasspath = systemClassPaths.get(key);
+    if (bootclasspath == null) {
       // look for a jimage in the given JDK
-      return JimageClassBinder.bind(options.system().get());
+      bootclasspath = JimageClassBinder.bind(javaHome);
+      systemClassPaths.put(key, bootclasspath);
     }
+    return bootclasspath;
+  }
 
-    // the bootclasspath might be empty, e.g. when compiling java.lang
-    return ClassPathBinder.bindClasspath(toPaths(options.bootClassPath()));
+  /**
+   * Returns an executor for parallel compilation phases. If only a single thread is requested,
+   * tasks are run directly on the calling thread.
+   */
+  private static ExecutorService newExecutor(int threads) {
+    if (threads == 1) {
+      return MoreExecutors.newDirectExecutorService();
+    }
+    return Executors.newFixedThreadPool(
+        threads, new ThreadFactoryBuilder().setNameFormat("turbine-%d").setDaemon(true).build());
   }
 
-  /** Parse all source files and source jars. */
-  // TODO(cushon): parallelize
-  private static ImmutableList<CompUnit> parseAll(TurbineOptions options) throws IOException {
-    ImmutableList.Builder<CompUnit> units = ImmutableList.builder();
+  /**
+   * Parse all source files and source jars. Files are read and parsed concurrently, but the
+   * compilation units are returned in the order the sources were given.
+   */
+  private static ImmutableList<CompUnit> parseAll(
+      TurbineOptions options, ExecutorService executor, Profiler profiler) throws IOException {
+    List<Future<CompUnit>> units = new ArrayList<>();
     for (String source : options.sources()) {
-      Path path = Paths.get(source);
-      units.add(Parser.parse(new SourceFile(source, new String(Files.readAllBytes(path), UTF_8))));
-    }
-    for (String sourceJar : options.sourceJars()) {
-      for (Zip.Entry ze : new Zip.ZipIterable(Paths.get(sourceJar))) {
-        if (ze.name().endsWith(".java")) {
-          String name = ze.name();
-          String source = new String(ze.data(), UTF_8);
-          units.add(Parser.parse(new SourceFile(name, source)));
+      units.add(
+          executor.submit(
+              new Callable<CompUnit>() {
+                @Override
+                public CompUnit call() throws IOException {
+                  try (Profiler.Span span = profiler.start("parse " + source)) {
+                    Path path = Paths.get(source);
+                    return Parser.parse(
+                        new SourceFile(source, new String(Files.readAllBytes(path), UTF_8)));
+                  }
+                }
+              }));
+    }
+    // the source jars need to stay open until all of their entries have been read
+    Closer closer = Closer.create();
+    try {
+      for (String sourceJar : options.sourceJars()) {
+        Zip.Cursor cursor = closer.register(new Zip.ZipIterable(Paths.get(sourceJar))).cursor();
+        while (cursor.next()) {
+          if (cursor.nameEndsWith(JAVA_SUFFIX)) {
+            Zip.Entry ze = cursor.entry();
+            units.add(
+                executor.submit(
+                    new Callable<CompUnit>() {
+                      @Override
+                      public CompUnit call() {
+                        String name = ze.name();
+                        try (Profiler.Span span = profiler.start("parse " + name)) {
+                          String source = new String(ze.data(), UTF_8);
+                          return Parser.parse(new SourceFile(name, source));
+                        }
+                      }
+                    }));
+          }
         }
       }
+      return getAll(units);
+    } catch (Throwable t) {
+      throw closer.rethrow(t);
+    } finally {
+      closer.close();
+    }
+  }
+
+  /** Waits for the given tasks to complete, and returns their results in order. */
+  private static <T> ImmutableList<T> getAll(List<Future<T>> futures) throws IOException {
+    ImmutableList.Builder<T> result = ImmutableList.builder();
+    for (Future<T> future : futures) {
+      try {
+        result.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new AssertionError(e.getCause());
+      }
     }
-    return units.build();
+    return result.build();
   }
 
-  /** Write bytecode to the output jar. */
+  /**
+   * Write bytecode to the output jar.
+   *
+   * <p>If requested, the output jar ends with an index of its classes (see {@link
+   * ClassPathIndex}), which is computed from the entries as they are written.
+   */
   private static void writeOutput(
       TurbineOptions options, Map<String, byte[]> lowered, Map<String, byte[]> transitive)
       throws IOException {
     Path path = Paths.get(options.outputFile());
+    ClassPathIndex.Builder index =
+        options.writeClassPathIndex() ? new ClassPathIndex.Builder() : null;
     try (OutputStream os = Files.newOutputStream(path);
         BufferedOutputStream bos = new BufferedOutputStream(os, BUFFER_SIZE);
         JarOutputStream jos = new JarOutputStream(bos)) {
       for (Map.Entry<String, byte[]> entry : lowered.entrySet()) {
-        addEntry(jos, entry.getKey() + ".class", entry.getValue());
+        addEntry(jos, index, entry.getKey() + ".class", entry.getValue());
       }
       for (Map.Entry<String, byte[]> entry : transitive.entrySet()) {
         addEntry(
-            jos, ClassPathBinder.TRANSITIVE_PREFIX + entry.getKey() + ".class", entry.getValue());
+            jos,
+            index,
+            ClassPathBinder.TRANSITIVE_PREFIX + entry.getKey() + ".class",
+            entry.getValue());
       }
       if (options.targetLabel().isPresent()) {
-        addEntry(jos, MANIFEST_DIR, new byte[] {});
-        addEntry(jos, MANIFEST_NAME, manifestContent(options));
+        addEntry(jos, index, MANIFEST_DIR, new byte[] {});
+        addEntry(jos, index, MANIFEST_NAME, manifestContent(options));
+      }
+      if (index != null) {
+        addEntry(jos, /* index= */ null, ClassPathIndex.NAME, index.build());
       }
     }
   }
@@ -191,7 +462,9 @@ public class Main {
           .toInstant()
           .toEpochMilli();
 
-  private static void addEntry(JarOutputStream jos, String name, byte[] bytes) throws IOException {
+  private static void addEntry(
+      JarOutputStream jos, @Nullable ClassPathIndex.Builder index, String name, byte[] bytes)
+      throws IOException {
     JarEntry je = new JarEntry(name);
     // TODO(cushon): switch to setLocalTime after we migrate to JDK 9
     je.setTime(DEFAULT_TIMESTAMP);
@@ -200,6 +473,9 @@ public class Main {
     je.setCrc(Hashing.crc32().hashBytes(bytes).padToLong());
     jos.putNextEntry(je);
     jos.write(bytes);
+    if (index != null) {
+      index.add(je, bytes);
+    }
   }
 
   private static byte[] manifestContent(TurbineOptions turbineOptions) throws IOException {
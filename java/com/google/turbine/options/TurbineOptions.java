@@ -16,6 +16,7 @@
 
 package com.google.turbine.options;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Optional;
@@ -43,6 +44,9 @@ public class TurbineOptions {
   private final boolean javacFallback;
   private final ImmutableList<String> javacOpts;
   private final boolean shouldReduceClassPath;
+  private final int threads;
+  private final Optional<String> profile;
+  private final boolean writeClassPathIndex;
 
   private TurbineOptions(
       String output,
@@ -61,7 +65,10 @@ public class TurbineOptions {
       ImmutableList<String> depsArtifacts,
       boolean javacFallback,
       ImmutableList<String> javacOpts,
-      boolean shouldReduceClassPath) {
+      boolean shouldReduceClassPath,
+      int threads,
+      @Nullable String profile,
+      boolean writeClassPathIndex) {
     this.output = checkNotNull(output, "output must not be null");
     this.classPath = checkNotNull(classPath, "classPath must not be null");
     this.bootClassPath = checkNotNull(bootClassPath, "bootClassPath must not be null");
@@ -79,6 +86,10 @@ public class TurbineOptions {
     this.javacFallback = javacFallback;
     this.javacOpts = checkNotNull(javacOpts, "javacOpts must not be null");
     this.shouldReduceClassPath = shouldReduceClassPath;
+    checkArgument(threads > 0, "threads must be positive, was %s", threads);
+    this.threads = threads;
+    this.profile = Optional.fromNullable(profile);
+    this.writeClassPathIndex = writeClassPathIndex;
   }
 
   /** Paths to the Java source files to compile. */
@@ -170,6 +181,21 @@ public class TurbineOptions {
     return shouldReduceClassPath;
   }
 
+  /** The maximum number of threads to use for parallel compilation phases. */
+  public int threads() {
+    return threads;
+  }
+
+  /** Output file for a trace of the compilation, in Chrome's trace event format. */
+  public Optional<String> profile() {
+    return profile;
+  }
+
+  /** Returns true if an index of the output jar's classes should be written into the jar. */
+  public boolean writeClassPathIndex() {
+    return writeClassPathIndex;
+  }
+
   public static Builder builder() {
     return new Builder();
   }
@@ -194,6 +220,9 @@ public class TurbineOptions {
     private boolean javacFallback = true;
     private final ImmutableList.Builder<String> javacOpts = ImmutableList.builder();
     private boolean shouldReduceClassPath = true;
+    private int threads = 1;
+    @Nullable private String profile;
+    private boolean writeClassPathIndex = false;
 
     public TurbineOptions build() {
       return new TurbineOptions(
@@ -213,7 +242,10 @@ public class TurbineOptions {
           depsArtifacts.build(),
           javacFallback,
           javacOpts.build(),
-          shouldReduceClassPath);
+          shouldReduceClassPath,
+          threads,
+          profile,
+          writeClassPathIndex);
     }
 
     public Builder setOutput(String output) {
@@ -311,5 +343,20 @@ public class TurbineOptions {
       this.directJars.addAll(jars);
       return this;
     }
+
+    public Builder setThreads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    public Builder setProfile(String profile) {
+      this.profile = profile;
+      return this;
+    }
+
+    public Builder setWriteClassPathIndex(boolean writeClassPathIndex) {
+      this.writeClassPathIndex = writeClassPathIndex;
+      return this;
+    }
   }
 }
@@ -138,6 +138,15 @@ public class TurbineOptionsParser {
         case "--nojavac_fallback":
           builder.setJavacFallback(false);
           break;
+        case "--threads":
+          builder.setThreads(Integer.parseInt(readOne(argumentDeque)));
+          break;
+        case "--profile":
+          builder.setProfile(readOne(argumentDeque));
+          break;
+        case "--classpath_index":
+          builder.setWriteClassPathIndex(true);
+          break;
         default:
           throw new IllegalArgumentException("unknown option: " + next);
       }
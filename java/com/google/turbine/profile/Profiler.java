@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.profile;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the wall and CPU time spent in each phase of a compilation, and writes it out in the
+ * Chrome trace event format (see chrome://tracing).
+ *
+ * <p>Spans may be recorded concurrently from multiple threads.
+ */
+public class Profiler {
+
+  /** A timed section of work, which ends when it is closed. */
+  public interface Span extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static final Span NO_OP_SPAN =
+      new Span() {
+        @Override
+        public void close() {}
+      };
+
+  private static final Profiler DISABLED = new Profiler(/* enabled= */ false);
+
+  /** Returns a profiler that doesn't record anything. */
+  public static Profiler disabled() {
+    return DISABLED;
+  }
+
+  /** Returns a profiler that records spans, starting now. */
+  public static Profiler create() {
+    return new Profiler(/* enabled= */ true);
+  }
+
+  private final boolean enabled;
+  private final long startNanos = System.nanoTime();
+  private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+
+  private Profiler(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /** A completed span. */
+  private static class Event {
+    final String name;
+    final long threadId;
+    final String threadName;
+    final long startNanos;
+    final long durationNanos;
+    final long cpuNanos;
+
+    Event(
+        String name,
+        long threadId,
+        String threadName,
+        long startNanos,
+        long durationNanos,
+        long cpuNanos) {
+      this.name = name;
+      this.threadId = threadId;
+      this.threadName = threadName;
+      this.startNanos = startNanos;
+      this.durationNanos = durationNanos;
+      this.cpuNanos = cpuNanos;
+    }
+  }
+
+  /**
+   * Starts a span with the given name on the current thread. The span must be closed on the same
+   * thread.
+   */
+  public Span start(String name) {
+    if (!enabled) {
+      return NO_OP_SPAN;
+    }
+    Thread thread = Thread.currentThread();
+    long start = System.nanoTime();
+    long cpuStart = cpuTime();
+    return new Span() {
+      @Override
+      public void close() {
+        long end = System.nanoTime();
+        long cpu = cpuStart != -1 ? cpuTime() - cpuStart : -1;
+        events.add(
+            new Event(
+                name, thread.getId(), thread.getName(), start - startNanos, end - start, cpu));
+      }
+    };
+  }
+
+  /** Returns the CPU time used by the current thread, or -1 if it is unavailable. */
+  private static long cpuTime() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : -1;
+  }
+
+  /** Writes the recorded spans to the given file as a JSON trace. */
+  public void write(Path path) throws IOException {
+    List<Event> sorted = new ArrayList<>(events);
+    sorted.sort(
+        new Comparator<Event>() {
+          @Override
+          public int compare(Event a, Event b) {
+            return Long.compare(a.startNanos, b.startNanos);
+          }
+        });
+    Map<Long, String> threads = new LinkedHashMap<>();
+    for (Event event : sorted) {
+      threads.putIfAbsent(event.threadId, event.threadName);
+    }
+    try (Writer writer = Files.newBufferedWriter(path, UTF_8)) {
+      writer.write("{\"traceEvents\":[");
+      boolean first = true;
+      for (Map.Entry<Long, String> thread : threads.entrySet()) {
+        if (!first) {
+          writer.write(',');
+        }
+        first = false;
+        writer.write(
+            String.format(
+                "\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,"
+                    + "\"args\":{\"name\":%s}}",
+                thread.getKey(), quote(thread.getValue())));
+      }
+      for (Event event : sorted) {
+        if (!first) {
+          writer.write(',');
+        }
+        first = false;
+        writer.write(
+            String.format(
+                "\n{\"name\":%s,\"cat\":\"turbine\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,"
+                    + "\"ts\":%d,\"dur\":%d",
+                quote(event.name),
+                event.threadId,
+                TimeUnit.NANOSECONDS.toMicros(event.startNanos),
+                TimeUnit.NANOSECONDS.toMicros(event.durationNanos)));
+        if (event.cpuNanos != -1) {
+          writer.write(
+              String.format(
+                  ",\"args\":{\"cpu_us\":%d}", TimeUnit.NANOSECONDS.toMicros(event.cpuNanos)));
+        }
+        writer.write('}');
+      }
+      writer.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+    }
+  }
+
+  /** Returns the given string as a JSON string literal. */
+  private static String quote(String value) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
@@ -17,7 +17,11 @@
 package com.google.turbine.types;
 
 import com.google.common.base.Verify;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.turbine.binder.bound.TypeBoundClass;
 import com.google.turbine.binder.env.Env;
 import com.google.turbine.binder.sym.ClassSymbol;
@@ -40,6 +44,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.annotation.Nullable;
 
 /**
@@ -58,9 +64,59 @@ import javax.annotation.Nullable;
  * }</pre>
  *
  * <p>The canonical name of the type of {@code B.i} is {@code A<String>.Inner}, not {@code B.Inner}.
+ *
+ * <p>Canonical types, lexical bases and superclass chains only depend on the environment, so they
+ * are cached for each environment they are computed in. Types with type annotations are not
+ * cached.
  */
 public class Canonicalize {
 
+  /** Canonicalization results for a single environment. */
+  private static class Cache {
+    final ConcurrentMap<CanonKey, ClassTy> types = new ConcurrentHashMap<>();
+    final ConcurrentMap<CanonKey, ImmutableList<SimpleClassTy>> lexicalBases =
+        new ConcurrentHashMap<>();
+    final ConcurrentMap<ClassSymbol, ClassTy> superClassTypes = new ConcurrentHashMap<>();
+    final ConcurrentMap<ClassSymbol, ImmutableSet<ClassSymbol>> superclasses =
+        new ConcurrentHashMap<>();
+  }
+
+  private static final LoadingCache<Env<?, ?>, Cache> CACHES =
+      CacheBuilder.newBuilder()
+          .weakKeys()
+          .build(
+              new CacheLoader<Env<?, ?>, Cache>() {
+                @Override
+                public Cache load(Env<?, ?> env) {
+                  return new Cache();
+                }
+              });
+
+  /** A key for a result that depends on the class a type is canonicalized in. */
+  private static class CanonKey {
+    @Nullable private final ClassSymbol base;
+    private final Object key;
+
+    CanonKey(@Nullable ClassSymbol base, Object key) {
+      this.base = base;
+      this.key = key;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(base, key);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CanonKey)) {
+        return false;
+      }
+      CanonKey other = (CanonKey) obj;
+      return Objects.equals(base, other.base) && key.equals(other.key);
+    }
+  }
+
   /** Canonicalizes the given type. */
   public static Type canonicalize(
       Env<ClassSymbol, TypeBoundClass> env, ClassSymbol base, Type type) {
@@ -121,7 +177,19 @@ public class Canonicalize {
   }
 
   /** Given a base symbol to canonicalize, find any implicit enclosing instances. */
-  private static Collection<ClassTy.SimpleClassTy> lexicalBase(
+  private static ImmutableList<ClassTy.SimpleClassTy> lexicalBase(
+      Env<ClassSymbol, TypeBoundClass> env, ClassSymbol first, ClassSymbol owner) {
+    CanonKey key = new CanonKey(owner, first);
+    Cache cache = CACHES.getUnchecked(env);
+    ImmutableList<ClassTy.SimpleClassTy> result = cache.lexicalBases.get(key);
+    if (result == null) {
+      result = ImmutableList.copyOf(lexicalBaseUncached(env, first, owner));
+      cache.lexicalBases.put(key, result);
+    }
+    return result;
+  }
+
+  private static Collection<ClassTy.SimpleClassTy> lexicalBaseUncached(
       Env<ClassSymbol, TypeBoundClass> env, ClassSymbol first, ClassSymbol owner) {
     if ((env.get(first).access() & TurbineFlag.ACC_STATIC) == TurbineFlag.ACC_STATIC) {
       return Collections.emptyList();
@@ -153,13 +221,18 @@ public class Canonicalize {
 
   // is s a subclass (not interface) of t?
   static boolean isSubclass(Env<ClassSymbol, TypeBoundClass> env, ClassSymbol s, ClassSymbol t) {
-    while (s != null) {
-      if (s.equals(t)) {
-        return true;
+    ConcurrentMap<ClassSymbol, ImmutableSet<ClassSymbol>> superclasses =
+        CACHES.getUnchecked(env).superclasses;
+    ImmutableSet<ClassSymbol> result = superclasses.get(s);
+    if (result == null) {
+      ImmutableSet.Builder<ClassSymbol> builder = ImmutableSet.builder();
+      for (ClassSymbol curr = s; curr != null; curr = env.get(curr).superclass()) {
+        builder.add(curr);
       }
-      s = env.get(s).superclass();
+      result = builder.build();
+      superclasses.put(s, result);
     }
-    return false;
+    return result.contains(t);
   }
 
   /**
@@ -195,13 +268,24 @@ public class Canonicalize {
         }
         break;
       }
-      TypeBoundClass info = env.get(curr.sym());
-      curr = canon(env, info.owner(), info.superClassType());
+      curr = superClassType(env, curr.sym());
     }
     simples.add(ty);
     return new ClassTy(simples.build());
   }
 
+  /** Returns the canonical superclass type of the given class, excluding type arguments. */
+  private static ClassTy superClassType(Env<ClassSymbol, TypeBoundClass> env, ClassSymbol sym) {
+    ConcurrentMap<ClassSymbol, ClassTy> superClassTypes = CACHES.getUnchecked(env).superClassTypes;
+    ClassTy result = superClassTypes.get(sym);
+    if (result == null) {
+      TypeBoundClass info = env.get(sym);
+      result = canon(env, info.owner(), info.superClassType());
+      superClassTypes.put(sym, result);
+    }
+    return result;
+  }
+
   /** Add the type arguments of a simple class type to a type mapping. */
   static void addInstantiation(
       Env<ClassSymbol, TypeBoundClass> env,
@@ -316,6 +400,22 @@ public class Canonicalize {
 
   public static ClassTy canonicalizeClassTy(
       Env<ClassSymbol, TypeBoundClass> env, ClassSymbol base, ClassTy ty) {
+    Object key = typeKey(ty);
+    if (key == null) {
+      return canonicalizeClassTyUncached(env, base, ty);
+    }
+    CanonKey canonKey = new CanonKey(base, key);
+    Cache cache = CACHES.getUnchecked(env);
+    ClassTy result = cache.types.get(canonKey);
+    if (result == null) {
+      result = canonicalizeClassTyUncached(env, base, ty);
+      cache.types.put(canonKey, result);
+    }
+    return result;
+  }
+
+  private static ClassTy canonicalizeClassTyUncached(
+      Env<ClassSymbol, TypeBoundClass> env, ClassSymbol base, ClassTy ty) {
     // canonicalize type arguments first
     ImmutableList.Builder<ClassTy.SimpleClassTy> args = ImmutableList.builder();
     for (ClassTy.SimpleClassTy s : ty.classes) {
@@ -349,4 +449,69 @@ public class Canonicalize {
         throw new AssertionError(type.boundKind());
     }
   }
+
+  /**
+   * Returns a key that is equal for structurally equal types, or {@code null} if the type has type
+   * annotations.
+   */
+  @Nullable
+  private static Object typeKey(Type type) {
+    switch (type.tyKind()) {
+      case PRIM_TY:
+        {
+          Type.PrimTy primTy = (Type.PrimTy) type;
+          return primTy.annos().isEmpty() ? primTy.primkind() : null;
+        }
+      case VOID_TY:
+        return TyKind.VOID_TY;
+      case TY_VAR:
+        {
+          TyVar tyVar = (TyVar) type;
+          return tyVar.annos().isEmpty() ? tyVar.sym() : null;
+        }
+      case ARRAY_TY:
+        {
+          ArrayTy arrayTy = (ArrayTy) type;
+          Object elem = typeKey(arrayTy.elementType());
+          return arrayTy.annos().isEmpty() && elem != null
+              ? ImmutableList.of(TyKind.ARRAY_TY, elem)
+              : null;
+        }
+      case WILD_TY:
+        {
+          WildTy wildTy = (WildTy) type;
+          if (!wildTy.annotations().isEmpty()) {
+            return null;
+          }
+          if (wildTy.boundKind() == WildTy.BoundKind.NONE) {
+            return wildTy.boundKind();
+          }
+          Object bound = typeKey(wildTy.bound());
+          return bound != null ? ImmutableList.of(wildTy.boundKind(), bound) : null;
+        }
+      case CLASS_TY:
+        {
+          ImmutableList.Builder<Object> key = ImmutableList.builder();
+          key.add(TyKind.CLASS_TY);
+          for (SimpleClassTy simple : ((ClassTy) type).classes) {
+            if (!simple.annos().isEmpty()) {
+              return null;
+            }
+            key.add(simple.sym());
+            ImmutableList.Builder<Object> targs = ImmutableList.builder();
+            for (Type targ : simple.targs()) {
+              Object targKey = typeKey(targ);
+              if (targKey == null) {
+                return null;
+              }
+              targs.add(targKey);
+            }
+            key.add(targs.build());
+          }
+          return key.build();
+        }
+      default:
+        throw new AssertionError(type.tyKind());
+    }
+  }
 }
@@ -18,9 +18,7 @@ package com.google.turbine.zip;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.google.common.io.ByteStreams;
 import com.google.common.primitives.UnsignedInts;
-import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.IOError;
 import java.io.IOException;
@@ -33,10 +31,14 @@ import java.nio.charset.CharacterCodingException;
 import java.nio.charset.CharsetDecoder;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipException;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 
 /**
  * A fast, minimal, and somewhat garbage zip implementation. This exists because graal <a
@@ -55,7 +57,7 @@ import java.util.zip.ZipException;
  * is an interesting benchmark because we typically only read ~10% of the compile-time classpath, so
  * most time is spent just scanning entry names. And rt.jar is an interesting test case because
  * every compilation has to read it, and it dominates the size of the classpath for small
- * compilations.
+ * compilations. See {@code com.google.turbine.bench.ZipBenchmark}.
  *
  * <p>Implementation notes:
  *
@@ -102,17 +104,17 @@ public class Zip {
   /** Iterates over a zip archive. */
   static class ZipIterator implements Iterator<Entry> {
 
-    /** A reader for the backing storage. */
-    private final FileChannel chan;
+    /** The mapped archive. */
+    private final ByteBuffer archive;
 
     private final Path path;
     private int cdindex = 0;
-    private final MappedByteBuffer cd;
+    private final ByteBuffer cd;
     private final CharsetDecoder decoder = UTF_8.newDecoder();
 
-    ZipIterator(Path path, FileChannel chan, MappedByteBuffer cd) {
+    ZipIterator(Path path, ByteBuffer archive, ByteBuffer cd) {
       this.path = path;
-      this.chan = chan;
+      this.archive = archive;
       this.cd = cd;
     }
 
@@ -129,64 +131,218 @@ public class Zip {
       int nameLength = cd.getChar(cdindex + CENNAM);
       int extLength = cd.getChar(cdindex + CENEXT);
       int commentLength = cd.getChar(cdindex + CENCOM);
-      Entry entry = new Entry(path, chan, string(cd, cdindex + CENHDR, nameLength), cd, cdindex);
+      Entry entry =
+          new Entry(path, archive, string(decoder, cd, cdindex + CENHDR, nameLength), cd, cdindex);
       cdindex += CENHDR + nameLength + extLength + commentLength;
       return entry;
     }
+  }
 
-    public String string(ByteBuffer buf, int offset, int length) {
-      buf = buf.duplicate();
-      buf.position(offset);
-      buf.limit(offset + length);
-      decoder.reset();
-      try {
-        return decoder.decode(buf).toString();
-      } catch (CharacterCodingException e) {
-        throw new IOError(e);
+  /**
+   * A cursor over the central directory of a zip archive, which allows entries to be filtered by
+   * matching the raw bytes of their names before decoding them.
+   *
+   * <p>Matching is done byte-wise, so patterns should only contain ASCII characters. (UTF-8 is the
+   * only supported encoding, and multi-byte UTF-8 sequences never contain ASCII bytes.)
+   *
+   * <p>Cursors are not thread-safe.
+   */
+  public static class Cursor {
+
+    private final Path path;
+    private final ByteBuffer archive;
+    private final ByteBuffer cd;
+    private final CharsetDecoder decoder = UTF_8.newDecoder();
+
+    /** The offset of the current entry's central directory record, or -1 before the first entry. */
+    private int cdindex = -1;
+
+    /** The offset of the next entry's central directory record. */
+    private int next = 0;
+
+    private int nameLength;
+
+    Cursor(Path path, ByteBuffer archive, ByteBuffer cd) {
+      this.path = path;
+      this.archive = archive;
+      this.cd = cd;
+    }
+
+    /** Advances to the next entry, and returns false if there are no more entries. */
+    public boolean next() {
+      if (next >= cd.limit()) {
+        return false;
       }
+      checkSignature(path, cd, next, 1, 2, "CENSIG");
+      cdindex = next;
+      nameLength = cd.getChar(cdindex + CENNAM);
+      int extLength = cd.getChar(cdindex + CENEXT);
+      int commentLength = cd.getChar(cdindex + CENCOM);
+      next += CENHDR + nameLength + extLength + commentLength;
+      return true;
+    }
+
+    /** The length in bytes of the current entry's name. */
+    public int nameLength() {
+      return nameLength;
+    }
+
+    /** Returns true if the current entry's name starts with the given bytes. */
+    public boolean nameStartsWith(byte[] prefix) {
+      return nameRegionMatches(0, prefix);
+    }
+
+    /** Returns true if the current entry's name ends with the given bytes. */
+    public boolean nameEndsWith(byte[] suffix) {
+      return nameRegionMatches(nameLength - suffix.length, suffix);
+    }
+
+    /**
+     * Returns true if the current entry's name contains the given bytes starting at the given
+     * offset.
+     */
+    public boolean nameRegionMatches(int offset, byte[] bytes) {
+      if (offset < 0 || offset + bytes.length > nameLength) {
+        return false;
+      }
+      int start = cdindex + CENHDR + offset;
+      for (int i = 0; i < bytes.length; i++) {
+        if (cd.get(start + i) != bytes[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the offset of the first occurrence of the given ASCII character in the current
+     * entry's name, or -1.
+     */
+    public int nameIndexOf(char c) {
+      int start = cdindex + CENHDR;
+      for (int i = 0; i < nameLength; i++) {
+        if (cd.get(start + i) == c) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Returns the offset of the last occurrence of the given ASCII character in the current
+     * entry's name, or -1.
+     */
+    public int nameLastIndexOf(char c) {
+      int start = cdindex + CENHDR;
+      for (int i = nameLength - 1; i >= 0; i--) {
+        if (cd.get(start + i) == c) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /** Decodes the current entry's name. */
+    public String name() {
+      return name(0, nameLength);
+    }
+
+    /** Decodes the bytes of the current entry's name between the given offsets. */
+    public String name(int begin, int end) {
+      return string(decoder, cd, cdindex + CENHDR + begin, end - begin);
+    }
+
+    /** The offset of the current entry's central directory record, see {@link Entry#cdOffset}. */
+    public int cdOffset() {
+      return cdindex;
+    }
+
+    /** Returns an {@link Entry} for the current entry. */
+    public Entry entry() {
+      return new Entry(path, archive, name(), cd, cdindex);
+    }
+  }
+
+  /**
+   * Returns the size of the central directory record for an entry with the given name, extra field
+   * and comment.
+   */
+  public static int centralDirectoryRecordSize(
+      String name, @Nullable byte[] extra, @Nullable String comment) {
+    return CENHDR
+        + name.getBytes(UTF_8).length
+        + (extra != null ? extra.length : 0)
+        + (comment != null ? comment.getBytes(UTF_8).length : 0);
+  }
+
+  /** Returns a little-endian view of the given region of the buffer. */
+  static ByteBuffer slice(ByteBuffer buf, int offset, int length) {
+    buf = buf.duplicate();
+    buf.position(offset);
+    buf.limit(offset + length);
+    return buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  static String string(CharsetDecoder decoder, ByteBuffer buf, int offset, int length) {
+    buf = buf.duplicate();
+    buf.position(offset);
+    buf.limit(offset + length);
+    decoder.reset();
+    try {
+      return decoder.decode(buf).toString();
+    } catch (CharacterCodingException e) {
+      throw new IOError(e);
     }
   }
 
-  /** Provides an {@link Iterable} of {@link Entry} over a zip archive. */
+  /**
+   * Provides an {@link Iterable} of {@link Entry} over a zip archive.
+   *
+   * <p>The archive is memory-mapped once when it is opened, and its file channel is closed
+   * immediately; entry data is read from slices of that mapping. Archives don't hold file
+   * descriptors, and can be shared between threads and compilations. The mapping is released when
+   * the archive and all of its entries are unreachable.
+   */
   public static class ZipIterable implements Iterable<Entry>, Closeable {
 
     private final Path path;
-    private final FileChannel chan;
-    private final MappedByteBuffer cd;
+    private final MappedByteBuffer archive;
+    private final ByteBuffer cd;
 
     public ZipIterable(Path path) throws IOException {
       this.path = path;
-      this.chan = FileChannel.open(path, StandardOpenOption.READ);
-      // Locate the EOCD
-      long size = chan.size();
-      if (size < ENDHDR) {
-        throw new ZipException("invalid zip archive");
+      try (FileChannel chan = FileChannel.open(path, StandardOpenOption.READ)) {
+        long size = chan.size();
+        if (size < ENDHDR) {
+          throw new ZipException("invalid zip archive");
+        }
+        if (size > Integer.MAX_VALUE) {
+          throw new ZipException("unsupported zip archive size: " + size);
+        }
+        this.archive = chan.map(MapMode.READ_ONLY, 0, size);
       }
-      long eocdOffset = size - ENDHDR;
-      MappedByteBuffer eocd = chan.map(MapMode.READ_ONLY, eocdOffset, ENDHDR);
-      eocd.order(ByteOrder.LITTLE_ENDIAN);
-      int index = 0;
+      archive.order(ByteOrder.LITTLE_ENDIAN);
+      // Locate the EOCD
+      int size = archive.limit();
+      int eocdOffset = size - ENDHDR;
       int commentSize = 0;
-      if (!isSignature(eocd, 0, 5, 6)) {
+      if (!isSignature(archive, eocdOffset, 5, 6)) {
         // The archive may contain a zip file comment; keep looking for the EOCD.
-        long start = Math.max(0, size - ENDHDR - 0xFFFF);
-        eocd = chan.map(MapMode.READ_ONLY, start, (size - start));
-        eocd.order(ByteOrder.LITTLE_ENDIAN);
-        index = (int) ((size - start) - ENDHDR);
-        while (index > 0) {
+        int start = Math.max(0, size - ENDHDR - 0xFFFF);
+        int index = size - ENDHDR;
+        while (index > start) {
           index--;
-          eocd.position(index);
-          if (isSignature(eocd, index, 5, 6)) {
-            commentSize = (int) ((size - start) - ENDHDR) - index;
-            eocdOffset = start + index;
+          if (isSignature(archive, index, 5, 6)) {
+            commentSize = size - ENDHDR - index;
+            eocdOffset = index;
             break;
           }
         }
       }
-      checkSignature(path, eocd, index, 5, 6, "ENDSIG");
-      int totalEntries = eocd.getChar(index + ENDTOT);
-      long cdsize = UnsignedInts.toLong(eocd.getInt(index + ENDSIZ));
-      int actualCommentSize = eocd.getChar(index + ENDCOM);
+      checkSignature(path, archive, eocdOffset, 5, 6, "ENDSIG");
+      int totalEntries = archive.getChar(eocdOffset + ENDTOT);
+      long cdsize = UnsignedInts.toLong(archive.getInt(eocdOffset + ENDSIZ));
+      int actualCommentSize = archive.getChar(eocdOffset + ENDCOM);
       if (commentSize != actualCommentSize) {
         throw new ZipException(
             String.format(
@@ -195,44 +351,88 @@ public class Zip {
       // If the number of entries is 0xffff, check if the archive has a zip64 EOCD locator.
       if (totalEntries == ZIP64_MAGICCOUNT) {
         // Assume the zip64 EOCD has the usual size; we don't support zip64 extensible data sectors.
-        long zip64eocdOffset = size - ENDHDR - ZIP64_LOCHDR - ZIP64_ENDHDR;
-        MappedByteBuffer zip64eocd = chan.map(MapMode.READ_ONLY, zip64eocdOffset, ZIP64_ENDHDR);
-        zip64eocd.order(ByteOrder.LITTLE_ENDIAN);
+        int zip64eocdOffset = size - ENDHDR - ZIP64_LOCHDR - ZIP64_ENDHDR;
         // Note that zip reading is necessarily best-effort, since an archive could contain 0xFFFF
         // entries and the last entry's data could contain a ZIP64_ENDSIG. Some implementations
         // read the full EOCD records and compare them.
-        if (zip64eocd.getInt(0) == ZIP64_ENDSIG) {
-          cdsize = zip64eocd.getLong(ZIP64_ENDSIZ);
+        if (zip64eocdOffset >= 0 && archive.getInt(zip64eocdOffset) == ZIP64_ENDSIG) {
+          cdsize = archive.getLong(zip64eocdOffset + ZIP64_ENDSIZ);
           eocdOffset = zip64eocdOffset;
         }
       }
-      this.cd = chan.map(MapMode.READ_ONLY, eocdOffset - cdsize, cdsize);
-      cd.order(ByteOrder.LITTLE_ENDIAN);
+      if (cdsize > eocdOffset) {
+        throw new ZipException("invalid central directory size: " + cdsize);
+      }
+      this.cd = slice(archive, (int) (eocdOffset - cdsize), (int) cdsize);
     }
 
     @Override
     public Iterator<Entry> iterator() {
-      return new ZipIterator(path, chan, cd);
+      return new ZipIterator(path, archive, cd);
     }
 
-    @Override
-    public void close() throws IOException {
-      chan.close();
+    /** Returns a {@link Cursor} positioned before the first entry in the archive. */
+    public Cursor cursor() {
+      return new Cursor(path, archive, cd);
+    }
+
+    /** The size in bytes of the archive's central directory. */
+    public int centralDirectorySize() {
+      return cd.limit();
+    }
+
+    /** A read-only view of the archive's central directory. */
+    public ByteBuffer centralDirectory() {
+      return cd.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns true if a complete central directory record starts at the given offset, i.e. if the
+     * offset can be passed to {@link #entry}.
+     */
+    public boolean hasEntry(int cdOffset) {
+      if (cdOffset < 0 || cdOffset > cd.limit() - CENHDR || !isSignature(cd, cdOffset, 1, 2)) {
+        return false;
+      }
+      int length =
+          CENHDR
+              + cd.getChar(cdOffset + CENNAM)
+              + cd.getChar(cdOffset + CENEXT)
+              + cd.getChar(cdOffset + CENCOM);
+      return length <= cd.limit() - cdOffset;
+    }
+
+    /**
+     * Returns the entry whose central directory record starts at the given offset, see {@link
+     * Entry#cdOffset}.
+     */
+    public Entry entry(int cdOffset) {
+      checkSignature(path, cd, cdOffset, 1, 2, "CENSIG");
+      int nameLength = cd.getChar(cdOffset + CENNAM);
+      String name = string(UTF_8.newDecoder(), cd, cdOffset + CENHDR, nameLength);
+      return new Entry(path, archive, name, cd, cdOffset);
     }
+
+    /**
+     * Closes the archive. The archive's file channel is closed as soon as it has been mapped, so
+     * this is a no-op; entries remain readable until the mapping is released.
+     */
+    @Override
+    public void close() {}
   }
 
   /** An entry in a zip archive. */
   public static class Entry {
 
     private final Path path;
-    private final FileChannel chan;
+    private final ByteBuffer archive;
     private final String name;
     private final ByteBuffer cd;
     private final int cdindex;
 
-    public Entry(Path path, FileChannel chan, String name, ByteBuffer cd, int cdindex) {
+    public Entry(Path path, ByteBuffer archive, String name, ByteBuffer cd, int cdindex) {
       this.path = path;
-      this.chan = chan;
+      this.archive = archive;
       this.name = name;
       this.cd = cd;
       this.cdindex = cdindex;
@@ -243,29 +443,33 @@ public class Zip {
       return name;
     }
 
+    /**
+     * The offset of the entry's record in the central directory, which can be used to retrieve the
+     * entry again with {@link ZipIterable#entry}.
+     */
+    public int cdOffset() {
+      return cdindex;
+    }
+
     /** The entry data. */
     public byte[] data() {
-      // Read the offset and variable lengths from the central directory and then try to map in the
-      // data section in one shot.
+      // Read the offset and variable lengths from the central directory, and then read the data
+      // section from the mapped archive.
       long offset = UnsignedInts.toLong(cd.getInt(cdindex + CENOFF));
       int nameLength = cd.getChar(cdindex + CENNAM);
-      int extLength = cd.getChar(cdindex + CENEXT);
       int compression = cd.getChar(cdindex + CENHOW);
       switch (compression) {
         case 0x8:
-          return getBytes(
-              offset,
-              nameLength,
-              extLength,
-              UnsignedInts.toLong(cd.getInt(cdindex + CENSIZ)),
-              /*deflate=*/ true);
+          return inflate(
+              getBytes(
+                  offset,
+                  nameLength,
+                  UnsignedInts.toLong(cd.getInt(cdindex + CENSIZ)),
+                  /* slack= */ 1),
+              UnsignedInts.toLong(cd.getInt(cdindex + CENLEN)));
         case 0x0:
           return getBytes(
-              offset,
-              nameLength,
-              extLength,
-              UnsignedInts.toLong(cd.getInt(cdindex + CENLEN)),
-              /*deflate=*/ false);
+              offset, nameLength, UnsignedInts.toLong(cd.getInt(cdindex + CENLEN)), /* slack= */ 0);
         default:
           throw new AssertionError(
               String.format("unsupported compression mode: 0x%x", compression));
@@ -273,54 +477,124 @@ public class Zip {
     }
 
     /**
-     * Number of extra bytes to read for each file, to avoid re-mapping the data if the local header
-     * reports more extra field data than the central directory.
+     * The entry data, as a read-only big-endian buffer. The data of stored (uncompressed) entries
+     * is a view of the mapped archive, and is not copied.
      */
-    static final int EXTRA_FIELD_SLACK = 128;
+    public ByteBuffer dataBuffer() {
+      long offset = UnsignedInts.toLong(cd.getInt(cdindex + CENOFF));
+      int nameLength = cd.getChar(cdindex + CENNAM);
+      int compression = cd.getChar(cdindex + CENHOW);
+      if (compression != 0x0) {
+        return ByteBuffer.wrap(data()).asReadOnlyBuffer();
+      }
+      long size = UnsignedInts.toLong(cd.getInt(cdindex + CENLEN));
+      long dataOffset = dataOffset(offset, nameLength, size, /* slack= */ 0);
+      ByteBuffer data = archive.duplicate();
+      data.position((int) dataOffset);
+      data.limit((int) (dataOffset + size));
+      return data.slice().asReadOnlyBuffer();
+    }
 
-    private byte[] getBytes(
-        long offset, int nameLength, int cenExtLength, long size, boolean deflate) {
+    /**
+     * Reads the given number of bytes from the entry's data section, into an array with {@code
+     * slack} additional trailing zero bytes.
+     */
+    private byte[] getBytes(long offset, int nameLength, long size, int slack) {
+      long dataOffset = dataOffset(offset, nameLength, size, slack);
+      byte[] bytes = new byte[(int) size + slack];
+      ByteBuffer data = archive.duplicate();
+      data.position((int) dataOffset);
+      data.get(bytes, 0, (int) size);
+      return bytes;
+    }
+
+    /**
+     * Returns the offset in the archive of the entry's data section, after checking that the local
+     * header and the data are in bounds.
+     */
+    private long dataOffset(long offset, int nameLength, long size, int slack) {
+      if (size > Integer.MAX_VALUE - slack) {
+        throw new IllegalArgumentException("unsupported zip entry size: " + size);
+      }
+      if (offset + LOCHDR > archive.limit()) {
+        throw new IOError(new ZipException(path + ": invalid LOC header offset: " + offset));
+      }
+      checkSignature(path, archive, (int) offset, 3, 4, "LOCSIG");
+      // The local header's extra fields may not match the central directory's.
+      int locExtLength = archive.getChar((int) offset + LOCEXT);
+      long dataOffset = offset + LOCHDR + nameLength + locExtLength;
+      if (dataOffset + size > archive.limit()) {
+        throw new IOError(new ZipException(path + ": truncated entry: " + name));
+      }
+      return dataOffset;
+    }
+
+    /**
+     * Inflates DEFLATE-compressed data into an array of the uncompressed size recorded in the
+     * central directory.
+     *
+     * <p>The input must have one trailing dummy byte, which zlib requires for raw (nowrap) streams.
+     */
+    private byte[] inflate(byte[] input, long size) {
       if (size > Integer.MAX_VALUE) {
         throw new IllegalArgumentException("unsupported zip entry size: " + size);
       }
+      byte[] output = new byte[(int) size];
+      Inflater inflater = acquireInflater();
       try {
-        MappedByteBuffer fc =
-            chan.map(
-                MapMode.READ_ONLY,
-                offset,
-                Math.min(
-                    LOCHDR + nameLength + cenExtLength + size + EXTRA_FIELD_SLACK,
-                    chan.size() - offset));
-        fc.order(ByteOrder.LITTLE_ENDIAN);
-        checkSignature(path, fc, /* index= */ 0, 3, 4, "LOCSIG");
-        int locExtLength = fc.getChar(LOCEXT);
-        if (locExtLength > cenExtLength + EXTRA_FIELD_SLACK) {
-          // If the local header's extra fields don't match the central directory and we didn't
-          // leave enough slac, re-map the data section with the correct extra field length.
-          fc = chan.map(MapMode.READ_ONLY, offset + LOCHDR + nameLength + locExtLength, size);
-          fc.order(ByteOrder.LITTLE_ENDIAN);
-        } else {
-          // Otherwise seek past the local header, name, and extra fields to the data.
-          fc.position(LOCHDR + nameLength + locExtLength);
-          fc.limit((int) (LOCHDR + nameLength + locExtLength + size));
-        }
-        byte[] bytes = new byte[(int) size];
-        fc.get(bytes);
-        if (deflate) {
-          bytes =
-              ByteStreams.toByteArray(
-                  new InflaterInputStream(
-                      new ByteArrayInputStream(bytes), new Inflater(/*nowrap=*/ true)));
+        inflater.setInput(input);
+        int n = 0;
+        while (n < output.length) {
+          int count = inflater.inflate(output, n, output.length - n);
+          if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+            throw new ZipException(
+                String.format(
+                    "%s: %s: expected %d bytes of uncompressed data, found %d",
+                    path, name, output.length, n));
+          }
+          n += count;
         }
-        return bytes;
-      } catch (IOException e) {
+        return output;
+      } catch (DataFormatException | ZipException e) {
         throw new IOError(e);
+      } finally {
+        releaseInflater(inflater);
+      }
+    }
+  }
+
+  /**
+   * The maximum number of idle {@link Inflater}s that are kept for re-use. Additional inflaters are
+   * ended as soon as they're released, so their native memory is freed without waiting for
+   * finalization.
+   */
+  private static final int MAX_POOLED_INFLATERS = 16;
+
+  @GuardedBy("inflaters")
+  private static final Deque<Inflater> inflaters = new ArrayDeque<>();
+
+  private static Inflater acquireInflater() {
+    synchronized (inflaters) {
+      Inflater inflater = inflaters.pollFirst();
+      if (inflater != null) {
+        return inflater;
+      }
+    }
+    return new Inflater(/*nowrap=*/ true);
+  }
+
+  private static void releaseInflater(Inflater inflater) {
+    inflater.reset();
+    synchronized (inflaters) {
+      if (inflaters.size() < MAX_POOLED_INFLATERS) {
+        inflaters.addFirst(inflater);
+        return;
       }
     }
+    inflater.end();
   }
 
-  static void checkSignature(
-      Path path, MappedByteBuffer buf, int index, int i, int j, String name) {
+  static void checkSignature(Path path, ByteBuffer buf, int index, int i, int j, String name) {
     if (!isSignature(buf, index, i, j)) {
       throw new AssertionError(
           String.format(
@@ -329,7 +603,7 @@ public class Zip {
     }
   }
 
-  static boolean isSignature(MappedByteBuffer buf, int index, int i, int j) {
+  static boolean isSignature(ByteBuffer buf, int index, int i, int j) {
     return (buf.get(index) == 'P')
         && (buf.get(index + 1) == 'K')
         && (buf.get(index + 2) == i)
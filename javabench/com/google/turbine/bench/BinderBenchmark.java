@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.bench;
+
+import static com.google.turbine.testing.TestClassPaths.TURBINE_BOOTCLASSPATH;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.turbine.binder.Binder;
+import com.google.turbine.binder.ClassPath;
+import com.google.turbine.binder.ClassPathBinder;
+import com.google.turbine.diag.SourceFile;
+import com.google.turbine.parse.Parser;
+import com.google.turbine.tree.Tree.CompUnit;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures {@link Binder#bind} over a generated corpus. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class BinderBenchmark {
+
+  private ImmutableList<CompUnit> units;
+  private ClassPath classpath;
+
+  @Setup
+  public void setup() throws IOException {
+    ImmutableList.Builder<CompUnit> units = ImmutableList.builder();
+    for (SourceFile source : Corpus.sources(1000)) {
+      units.add(Parser.parse(source));
+    }
+    this.units = units.build();
+    this.classpath = ClassPathBinder.bindClasspath(ImmutableList.of());
+  }
+
+  @Benchmark
+  public void bind(Blackhole bh) {
+    bh.consume(
+        Binder.bind(
+            units, classpath, TURBINE_BOOTCLASSPATH, /* moduleVersion= */ Optional.absent()));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.bench;
+
+import com.google.common.collect.ImmutableList;
+import com.google.turbine.binder.ClassPath;
+import com.google.turbine.binder.ClassPathBinder;
+import com.google.turbine.binder.sym.ClassSymbol;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link ClassPathBinder#bindClasspath} for rt.jar, followed by the lookups a typical
+ * small compilation performs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ClassPathBinderBenchmark {
+
+  private static final ImmutableList<ClassSymbol> LOOKUPS =
+      ImmutableList.of(
+          ClassSymbol.OBJECT,
+          ClassSymbol.STRING,
+          new ClassSymbol("java/io/Serializable"),
+          new ClassSymbol("java/lang/Comparable"),
+          new ClassSymbol("java/lang/Deprecated"),
+          new ClassSymbol("java/util/List"),
+          new ClassSymbol("java/util/Map"),
+          new ClassSymbol("java/util/Map$Entry"));
+
+  private ImmutableList<Path> bootclasspath;
+
+  @Setup
+  public void setup() throws IOException {
+    bootclasspath = ImmutableList.of(Corpus.bootJar());
+  }
+
+  @Benchmark
+  public void bindAndLookup(Blackhole bh) throws IOException {
+    ClassPath classPath = ClassPathBinder.bindClasspath(bootclasspath);
+    for (ClassSymbol sym : LOOKUPS) {
+      bh.consume(classPath.env().get(sym).kind());
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.bench;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.turbine.bytecode.ClassFile;
+import com.google.turbine.bytecode.ClassReader;
+import com.google.turbine.zip.Zip;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link ClassReader#read} over the class files in rt.jar, with and without decoding the
+ * sections that are read on demand.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ClassReaderBenchmark {
+
+  private static final Pattern LOCAL_OR_ANONYMOUS = Pattern.compile("\\$[0-9]");
+
+  private ImmutableMap<String, byte[]> classes;
+
+  @Setup
+  public void setup() throws IOException {
+    ImmutableMap.Builder<String, byte[]> classes = ImmutableMap.builder();
+    try (Zip.ZipIterable zip = new Zip.ZipIterable(Corpus.bootJar())) {
+      for (Zip.Entry entry : zip) {
+        // skip local and anonymous classes, which are never read from the classpath
+        if (entry.name().endsWith(".class") && !LOCAL_OR_ANONYMOUS.matcher(entry.name()).find()) {
+          classes.put(entry.name(), entry.data());
+        }
+      }
+    }
+    this.classes = classes.build();
+  }
+
+  /** Reads each class file, and decodes all of its sections. */
+  @Benchmark
+  public void read(Blackhole bh) {
+    for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+      ClassFile classFile = ClassReader.read(entry.getKey(), entry.getValue());
+      bh.consume(classFile.interfaces());
+      bh.consume(classFile.fields());
+      bh.consume(classFile.methods());
+      bh.consume(classFile.annotations());
+    }
+  }
+
+  /** Reads each class file, without decoding the sections that are read on demand. */
+  @Benchmark
+  public void skim(Blackhole bh) {
+    for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+      bh.consume(ClassReader.read(entry.getKey(), entry.getValue()));
+    }
+  }
+}
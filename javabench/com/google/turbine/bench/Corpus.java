@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.bench;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.turbine.diag.SourceFile;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/** Inputs for the benchmarks. */
+final class Corpus {
+
+  /**
+   * Generates a stable corpus of synthetic compilation units. The classes form short inheritance
+   * chains across packages, and use generics, annotations, nested types, and constants that refer
+   * to constants in other classes.
+   */
+  static ImmutableList<SourceFile> sources(int count) {
+    ImmutableList.Builder<SourceFile> sources = ImmutableList.builder();
+    for (int i = 0; i < count; i++) {
+      sources.add(new SourceFile(packageName(i).replace('.', '/') + "/C" + i + ".java", source(i)));
+    }
+    return sources.build();
+  }
+
+  private static String packageName(int i) {
+    return "bench.p" + (i % 10);
+  }
+
+  private static String source(int i) {
+    boolean hasSuper = i % 10 != 0;
+    String superName = "C" + (i - 1);
+    StringBuilder sb = new StringBuilder();
+    sb.append("package ").append(packageName(i)).append(";\n\n");
+    sb.append("import java.io.IOException;\n");
+    sb.append("import java.io.Serializable;\n");
+    sb.append("import java.util.List;\n");
+    sb.append("import java.util.Map;\n");
+    if (hasSuper) {
+      sb.append("import ").append(packageName(i - 1)).append('.').append(superName).append(";\n");
+    }
+    sb.append("\n/** Class number ").append(i).append(". */\n");
+    sb.append("@Deprecated\n");
+    sb.append("public class C").append(i).append("<T extends Comparable<T>>");
+    if (hasSuper) {
+      sb.append(" extends ").append(superName).append("<T>");
+    }
+    sb.append(" implements Serializable {\n");
+    sb.append("  public static final int CONST = ").append(i);
+    if (hasSuper) {
+      sb.append(" + ").append(superName).append(".CONST");
+    }
+    sb.append(";\n");
+    sb.append("  public static final String NAME = \"C").append(i).append("\" + CONST;\n");
+    sb.append("  protected List<Map<String, T>> values;\n");
+    sb.append("  private final long[] longs = {1L, 2L, 3L};\n\n");
+    sb.append("  public C").append(i).append("(T t) {\n");
+    if (hasSuper) {
+      sb.append("    super(t);\n");
+    }
+    sb.append("    values = null;\n");
+    sb.append("  }\n\n");
+    sb.append("  @SuppressWarnings(\"unchecked\")\n");
+    sb.append("  public <U extends T> U method(List<? super U> list, int x) throws IOException {\n");
+    sb.append("    if (x > CONST) {\n");
+    sb.append("      throw new IOException(NAME + x);\n");
+    sb.append("    }\n");
+    sb.append("    return (U) list.get(x);\n");
+    sb.append("  }\n\n");
+    sb.append("  public static class Inner<V> implements Comparable<Inner<V>> {\n");
+    sb.append("    public V value;\n\n");
+    sb.append("    @Override\n");
+    sb.append("    public int compareTo(Inner<V> o) {\n");
+    sb.append("      return 0;\n");
+    sb.append("    }\n");
+    sb.append("  }\n\n");
+    sb.append("  public enum Kind {\n");
+    sb.append("    A,\n");
+    sb.append("    B,\n");
+    sb.append("    C;\n");
+    sb.append("  }\n\n");
+    sb.append("  public @interface Anno {\n");
+    sb.append("    int value() default CONST;\n\n");
+    sb.append("    Kind kind() default Kind.A;\n");
+    sb.append("  }\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Returns the largest jar on the JDK 8 bootclasspath, i.e. rt.jar. The benchmarks must be run on
+   * JDK 8.
+   */
+  static Path bootJar() throws IOException {
+    Path result = null;
+    for (String entry :
+        Splitter.on(File.pathSeparatorChar)
+            .omitEmptyStrings()
+            .split(System.getProperty("sun.boot.class.path", ""))) {
+      Path path = Paths.get(entry);
+      if (Files.isRegularFile(path)
+          && (result == null || Files.size(path) > Files.size(result))) {
+        result = path;
+      }
+    }
+    if (result == null) {
+      throw new IllegalStateException("benchmarks must be run on JDK 8");
+    }
+    return result;
+  }
+
+  private Corpus() {}
+}
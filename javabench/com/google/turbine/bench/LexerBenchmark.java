@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.bench;
+
+import com.google.common.collect.ImmutableList;
+import com.google.turbine.diag.SourceFile;
+import com.google.turbine.parse.StreamLexer;
+import com.google.turbine.parse.Token;
+import com.google.turbine.parse.UnicodeEscapePreprocessor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures {@link StreamLexer} throughput over a generated corpus. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class LexerBenchmark {
+
+  private ImmutableList<SourceFile> sources;
+
+  @Setup
+  public void setup() {
+    sources = Corpus.sources(1000);
+  }
+
+  @Benchmark
+  public void lex(Blackhole bh) {
+    for (SourceFile source : sources) {
+      StreamLexer lexer = new StreamLexer(new UnicodeEscapePreprocessor(source));
+      Token token;
+      do {
+        token = lexer.next();
+        bh.consume(token);
+      } while (token != Token.EOF);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.bench;
+
+import com.google.turbine.zip.Zip;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures iterating over and reading the entries of rt.jar with {@link Zip}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ZipBenchmark {
+
+  private Path jar;
+
+  @Setup
+  public void setup() throws IOException {
+    jar = Corpus.bootJar();
+  }
+
+  /** Iterates over entry names, which is most of the work of binding a classpath jar. */
+  @Benchmark
+  public void names(Blackhole bh) throws IOException {
+    try (Zip.ZipIterable zip = new Zip.ZipIterable(jar)) {
+      for (Zip.Entry entry : zip) {
+        bh.consume(entry.name());
+      }
+    }
+  }
+
+  /** Iterates over entries and reads all of their data. */
+  @Benchmark
+  public void data(Blackhole bh) throws IOException {
+    try (Zip.ZipIterable zip = new Zip.ZipIterable(jar)) {
+      for (Zip.Entry entry : zip) {
+        bh.consume(entry.data());
+      }
+    }
+  }
+}
@@ -24,13 +24,21 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.turbine.binder.Binder.BindingResult;
 import com.google.turbine.binder.bound.SourceTypeBoundClass;
+import com.google.turbine.binder.bound.TypeBoundClass;
 import com.google.turbine.binder.sym.ClassSymbol;
+import com.google.turbine.diag.SourceFile;
 import com.google.turbine.diag.TurbineError;
 import com.google.turbine.lower.IntegrationTestSupport;
+import com.google.turbine.lower.Lower;
 import com.google.turbine.model.TurbineFlag;
 import com.google.turbine.parse.Parser;
+import com.google.turbine.profile.Profiler;
 import com.google.turbine.tree.Tree;
+import com.google.turbine.type.AnnoInfo;
+import com.google.turbine.type.Type;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.annotation.ElementType;
 import java.nio.file.Files;
@@ -39,6 +47,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import org.junit.Rule;
@@ -289,6 +299,227 @@ public class BinderTest {
     assertThat(a.annotationMetadata().target()).containsExactly(ElementType.TYPE_USE);
   }
 
+  @Test
+  public void sharedImportsError() throws Exception {
+    List<Tree.CompUnit> units = new ArrayList<>();
+    units.add(
+        Parser.parse(
+            new SourceFile(
+                "a/A.java",
+                Joiner.on('\n')
+                    .join(
+                        "package a;", //
+                        "import java.util.List;",
+                        "import b.Missing;",
+                        "public class A {",
+                        "  List<String> xs;",
+                        "}"))));
+    units.add(
+        Parser.parse(
+            new SourceFile(
+                "a/B.java",
+                Joiner.on('\n')
+                    .join(
+                        "package a;", //
+                        "",
+                        "import java.util.List;",
+                        "import b.Missing;",
+                        "public class B extends Missing {",
+                        "  List<String> xs;",
+                        "}"))));
+
+    try {
+      Binder.bind(
+          units,
+          ClassPathBinder.bindClasspath(Collections.emptyList()),
+          TURBINE_BOOTCLASSPATH,
+          /* moduleVersion=*/ Optional.absent());
+      fail();
+    } catch (TurbineError e) {
+      assertThat(e.getMessage()).startsWith("a/B.java:4: error: symbol not found b.Missing");
+    }
+  }
+
+  @Test
+  public void parallelBinding() throws Exception {
+    List<Tree.CompUnit> units = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      units.add(
+          parseLines(
+              "package p" + (i % 3) + ";",
+              String.format("import p%d.C%d;", ((i + 1) % 20) % 3, (i + 1) % 20),
+              String.format("@Deprecated public class C%d<T extends C%d<T>> {", i, (i + 1) % 20),
+              String.format("  public static final int X = %d;", i),
+              i < 19
+                  ? String.format("  public static final int Y = C%d.Y + X;", i + 1)
+                  : "  public static final int Y = X;",
+              "  @Deprecated java.util.List<@Deprecated T> xs;",
+              "  class I extends java.util.ArrayList<T> {}",
+              "}"));
+    }
+    ClassPath classpath = ClassPathBinder.bindClasspath(Collections.emptyList());
+
+    BindingResult serial =
+        Binder.bind(units, classpath, TURBINE_BOOTCLASSPATH, /* moduleVersion=*/ Optional.absent());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    BindingResult parallel;
+    try {
+      parallel =
+          Binder.bind(
+              units,
+              classpath,
+              TURBINE_BOOTCLASSPATH,
+              /* moduleVersion=*/ Optional.absent(),
+              executor,
+              Profiler.disabled());
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(parallel.units().keySet())
+        .containsExactlyElementsIn(serial.units().keySet())
+        .inOrder();
+    Map<String, byte[]> expected =
+        Lower.lowerAll(serial.units(), serial.modules(), serial.classPathEnv()).bytes();
+    Map<String, byte[]> actual =
+        Lower.lowerAll(parallel.units(), parallel.modules(), parallel.classPathEnv()).bytes();
+    assertThat(actual.keySet()).containsExactlyElementsIn(expected.keySet()).inOrder();
+    for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+      assertThat(actual.get(entry.getKey())).isEqualTo(entry.getValue());
+    }
+  }
+
+  @Test
+  public void canonicalizeInDifferentClasses() throws Exception {
+    // The same simple name canonicalizes to different types in A and B.
+    ImmutableMap<ClassSymbol, SourceTypeBoundClass> bound =
+        bind(
+            parseLines(
+                "package p;", //
+                "public class A<T> {",
+                "  public class Inner {}",
+                "  Inner i;",
+                "}",
+                "class B extends A<String> {",
+                "  Inner i;",
+                "}"));
+
+    assertThat(fieldTypes(bound.get(new ClassSymbol("p/A"))))
+        .containsExactly("p/A<p/A#T>.Inner");
+    assertThat(fieldTypes(bound.get(new ClassSymbol("p/B"))))
+        .containsExactly("p/A<java/lang/String>.Inner");
+  }
+
+  @Test
+  public void canonicalizeTypeAnnotations() throws Exception {
+    ImmutableMap<ClassSymbol, SourceTypeBoundClass> bound =
+        bind(
+            parseLines(
+                "package p;", //
+                "import java.lang.annotation.ElementType;",
+                "import java.lang.annotation.Target;",
+                "import java.util.List;",
+                "@Target(ElementType.TYPE_USE) @interface Anno {}",
+                "public class A<T> {",
+                "  public class Inner {}",
+                "}",
+                "class B extends A<String> {",
+                "  List<Inner> xs;",
+                "  List<@Anno Inner> ys;",
+                "}"));
+
+    // The annotated type has the same canonical form as the unannotated one, and keeps its
+    // annotations.
+    ImmutableList<TypeBoundClass.FieldInfo> fields = bound.get(new ClassSymbol("p/B")).fields();
+    assertThat(fieldTypes(bound.get(new ClassSymbol("p/B"))))
+        .containsExactly(
+            "java/util/List<p/A<java/lang/String>.Inner>",
+            "java/util/List<p/A<java/lang/String>.Inner>")
+        .inOrder();
+    assertThat(innerAnnotations(fields.get(0).type())).isEmpty();
+    assertThat(innerAnnotations(fields.get(1).type())).containsExactly(new ClassSymbol("p/Anno"));
+  }
+
+  @Test
+  public void memberTypeLookup() throws Exception {
+    ImmutableMap<ClassSymbol, SourceTypeBoundClass> bound =
+        bind(
+            parseLines(
+                "package p;", //
+                "class A {",
+                "  static class I {}",
+                "}",
+                "class B extends A {",
+                "  static class I {}",
+                "  I i;",
+                "  I j;",
+                "  String s;",
+                "  String t;",
+                "}",
+                "class C extends A {",
+                "  I i;",
+                "  String s;",
+                "}",
+                "class D {",
+                "  static class String {}",
+                "  String s;",
+                "}"));
+
+    // member types shadow inherited types, and names that aren't members are found in enclosing
+    // scopes every time they are looked up
+    assertThat(fieldTypes(bound.get(new ClassSymbol("p/B"))))
+        .containsExactly("p/B$I", "p/B$I", "java/lang/String", "java/lang/String")
+        .inOrder();
+    assertThat(fieldTypes(bound.get(new ClassSymbol("p/C"))))
+        .containsExactly("p/A$I", "java/lang/String")
+        .inOrder();
+    assertThat(fieldTypes(bound.get(new ClassSymbol("p/D")))).containsExactly("p/D$String");
+  }
+
+  @Test
+  public void memberTypeLookupMiss() throws Exception {
+    try {
+      bind(
+          parseLines(
+              "package p;", //
+              "class A {",
+              "  NoSuch x;",
+              "  NoSuch y;",
+              "}"));
+      fail();
+    } catch (TurbineError e) {
+      assertThat(e.getMessage()).contains("symbol not found NoSuch");
+    }
+  }
+
+  private static ImmutableMap<ClassSymbol, SourceTypeBoundClass> bind(Tree.CompUnit... units)
+      throws IOException {
+    return Binder.bind(
+            ImmutableList.copyOf(units),
+            ClassPathBinder.bindClasspath(Collections.emptyList()),
+            TURBINE_BOOTCLASSPATH,
+            /* moduleVersion=*/ Optional.absent())
+        .units();
+  }
+
+  private static List<String> fieldTypes(SourceTypeBoundClass info) {
+    List<String> result = new ArrayList<>();
+    for (TypeBoundClass.FieldInfo field : info.fields()) {
+      result.add(field.type().toString());
+    }
+    return result;
+  }
+
+  /** Returns the type annotations of the last simple name in a type's first type argument. */
+  private static List<ClassSymbol> innerAnnotations(Type type) {
+    Type.ClassTy arg = (Type.ClassTy) ((Type.ClassTy) type).classes.get(0).targs().get(0);
+    List<ClassSymbol> result = new ArrayList<>();
+    for (AnnoInfo anno : arg.classes.get(arg.classes.size() - 1).annos()) {
+      result.add(anno.sym());
+    }
+    return result;
+  }
+
   private Tree.CompUnit parseLines(String... lines) {
     return Parser.parse(Joiner.on('\n').join(lines));
   }
@@ -33,11 +33,18 @@ import com.google.turbine.binder.lookup.Scope;
 import com.google.turbine.binder.sym.ClassSymbol;
 import com.google.turbine.model.TurbineFlag;
 import com.google.turbine.model.TurbineTyKind;
+import com.google.turbine.zip.Zip;
 import java.io.IOError;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -91,8 +98,11 @@ public class ClassPathBinderTest {
             new ClassSymbol("java/util/List"),
             () -> {
               try {
-                return ByteStreams.toByteArray(
-                    getClass().getClassLoader().getResourceAsStream("java/util/ArrayList.class"));
+                return ByteBuffer.wrap(
+                    ByteStreams.toByteArray(
+                        getClass()
+                            .getClassLoader()
+                            .getResourceAsStream("java/util/ArrayList.class")));
               } catch (IOException e) {
                 throw new IOError(e);
               }
@@ -120,4 +130,179 @@ public class ClassPathBinderTest {
       assertThat(e.getMessage()).contains("NOT_A_JAR");
     }
   }
+
+  @Test
+  public void cache() throws Exception {
+    Path lib = temporaryFolder.newFile("lib.jar").toPath();
+    writeJar(lib, "p/A.class");
+
+    ClassPathCache cache = new ClassPathCache(Long.MAX_VALUE);
+    ClassSymbol a = new ClassSymbol("p/A");
+    ClassPath first = ClassPathBinder.bindClasspath(ImmutableList.of(lib), cache);
+    ClassPath second = ClassPathBinder.bindClasspath(ImmutableList.of(lib), cache);
+    assertThat(first.env().get(a)).isNotNull();
+    assertThat(second.env().get(a)).isSameAs(first.env().get(a));
+
+    writeJar(lib, "p/A.class", "p/B.class");
+    Files.setLastModifiedTime(
+        lib, FileTime.fromMillis(Files.getLastModifiedTime(lib).toMillis() + 1000));
+
+    ClassPath third = ClassPathBinder.bindClasspath(ImmutableList.of(lib), cache);
+    assertThat(third.env().get(a)).isNotSameAs(first.env().get(a));
+    assertThat(third.env().get(new ClassSymbol("p/B"))).isNotNull();
+  }
+
+  @Test
+  public void packageLookup() throws Exception {
+    Path lib1 = temporaryFolder.newFile("lib1.jar").toPath();
+    writeJar(lib1, "p/A.class", "q/r/B.class");
+    Path lib2 = temporaryFolder.newFile("lib2.jar").toPath();
+    writeJar(lib2, "p/A.class", "p/C.class");
+
+    ClassPath classPath = ClassPathBinder.bindClasspath(ImmutableList.of(lib1, lib2));
+
+    Scope p = classPath.index().lookupPackage(ImmutableList.of("p"));
+    assertThat(p.lookup(new LookupKey(ImmutableList.of("A"))).sym())
+        .isEqualTo(new ClassSymbol("p/A"));
+    assertThat(p.lookup(new LookupKey(ImmutableList.of("C"))).sym())
+        .isEqualTo(new ClassSymbol("p/C"));
+    assertThat(p.lookup(new LookupKey(ImmutableList.of("B")))).isNull();
+    assertThat(classPath.env().get(new ClassSymbol("p/A")).jarFile()).isEqualTo(lib1.toString());
+    assertThat(classPath.env().get(new ClassSymbol("p/B"))).isNull();
+
+    LookupResult result =
+        classPath.index().scope().lookup(new LookupKey(ImmutableList.of("q", "r", "B", "D")));
+    assertThat(result.sym()).isEqualTo(new ClassSymbol("q/r/B"));
+    assertThat(result.remaining()).containsExactly("D");
+
+    assertThat(classPath.index().lookupPackage(ImmutableList.of("q"))).isNotNull();
+    assertThat(classPath.index().lookupPackage(ImmutableList.of("x"))).isNull();
+  }
+
+  @Test
+  public void classPathIndex() throws Exception {
+    Path lib = temporaryFolder.newFile("lib.jar").toPath();
+    byte[] index =
+        writeIndexedJar(lib, "p/A.class", "q/r/B.class", "META-INF/TRANSITIVE/t/T.class");
+
+    try (Zip.ZipIterable zip = new Zip.ZipIterable(lib)) {
+      // the index computed while writing the jar matches the index computed by scanning it
+      assertThat(index).isEqualTo(ClassPathIndex.scan(zip).toByteArray());
+      ClassPathIndex read = ClassPathIndex.read(ByteBuffer.wrap(index), zip.centralDirectorySize());
+      assertThat(read.packages.keySet()).containsExactly("p", "q/r").inOrder();
+    }
+
+    ClassPath classPath = ClassPathBinder.bindClasspath(ImmutableList.of(lib));
+    assertThat(classPath.env().get(new ClassSymbol("p/A"))).isNotNull();
+    assertThat(classPath.env().get(new ClassSymbol("q/r/B"))).isNotNull();
+    assertThat(classPath.env().get(new ClassSymbol("t/T"))).isNotNull();
+    assertThat(classPath.index().lookupPackage(ImmutableList.of("q"))).isNotNull();
+
+    // an index for a different central directory is ignored
+    writeJar(lib, index, "p/A.class", "p/C.class", "q/r/B.class");
+    try (Zip.ZipIterable zip = new Zip.ZipIterable(lib)) {
+      assertThat(ClassPathIndex.read(ByteBuffer.wrap(index), zip.centralDirectorySize()))
+          .isNull();
+    }
+    classPath = ClassPathBinder.bindClasspath(ImmutableList.of(lib));
+    assertThat(classPath.env().get(new ClassSymbol("p/C"))).isNotNull();
+    assertThat(classPath.env().get(new ClassSymbol("q/r/B"))).isNotNull();
+  }
+
+  @Test
+  public void classPathIndexReordered() throws Exception {
+    Path lib = temporaryFolder.newFile("lib.jar").toPath();
+    byte[] index = writeIndexedJar(lib, "p/A.class", "p/Bb.class", "q/C.class", "r/D.class");
+
+    // The same entries in a different order have a central directory of the same size, but the
+    // index's offsets refer to the wrong entries, or to the middle of entries.
+    for (ImmutableList<String> entries :
+        ImmutableList.of(
+            ImmutableList.of("q/C.class", "p/Bb.class", "r/D.class", "p/A.class"),
+            ImmutableList.of("p/Bb.class", "p/A.class", "q/C.class", "r/D.class"))) {
+      writeJar(lib, index, entries.toArray(new String[0]));
+      try (Zip.ZipIterable zip = new Zip.ZipIterable(lib)) {
+        assertThat(ClassPathIndex.read(ByteBuffer.wrap(index), zip.centralDirectorySize()))
+            .isNotNull();
+      }
+
+      ClassPath classPath = ClassPathBinder.bindClasspath(ImmutableList.of(lib));
+      Scope p = classPath.index().lookupPackage(ImmutableList.of("p"));
+      assertThat(p.lookup(new LookupKey(ImmutableList.of("A"))).sym())
+          .isEqualTo(new ClassSymbol("p/A"));
+      assertThat(p.lookup(new LookupKey(ImmutableList.of("Bb"))).sym())
+          .isEqualTo(new ClassSymbol("p/Bb"));
+      assertThat(p.lookup(new LookupKey(ImmutableList.of("C")))).isNull();
+      assertThat(classPath.env().get(new ClassSymbol("q/C"))).isNotNull();
+      assertThat(classPath.env().get(new ClassSymbol("r/D"))).isNotNull();
+    }
+  }
+
+  @Test
+  public void classPathIndexRenamed() throws Exception {
+    Path lib = temporaryFolder.newFile("lib.jar").toPath();
+    byte[] index = writeIndexedJar(lib, "p/A.class");
+
+    // A class moved to a different package with a name of the same length leaves the central
+    // directory the same size, and the index's offsets still refer to a class entry.
+    writeJar(lib, index, "q/A.class");
+    try (Zip.ZipIterable zip = new Zip.ZipIterable(lib)) {
+      assertThat(ClassPathIndex.read(ByteBuffer.wrap(index), zip.centralDirectorySize()))
+          .isNotNull();
+    }
+
+    ClassPath classPath = ClassPathBinder.bindClasspath(ImmutableList.of(lib));
+    assertThat(classPath.env().get(new ClassSymbol("q/A"))).isNotNull();
+    assertThat(classPath.env().get(new ClassSymbol("p/A"))).isNull();
+    assertThat(classPath.index().lookupPackage(ImmutableList.of("q"))).isNotNull();
+    assertThat(classPath.index().lookupPackage(ImmutableList.of("p"))).isNull();
+  }
+
+  /** Writes a jar with an index of its entries as the last entry, and returns the index. */
+  private static byte[] writeIndexedJar(Path path, String... entries) throws IOException {
+    ClassPathIndex.Builder builder = new ClassPathIndex.Builder();
+    try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(path))) {
+      for (String entry : entries) {
+        JarEntry je = new JarEntry(entry);
+        byte[] data = {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe};
+        jos.putNextEntry(je);
+        jos.write(data);
+        builder.add(je, data);
+      }
+      byte[] index = builder.build();
+      writeIndex(jos, index);
+      return index;
+    }
+  }
+
+  /** Writes a jar with the given index as the last entry. */
+  private static void writeJar(Path path, byte[] index, String... entries) throws IOException {
+    try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(path))) {
+      for (String entry : entries) {
+        jos.putNextEntry(new JarEntry(entry));
+        jos.write(new byte[] {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe});
+      }
+      writeIndex(jos, index);
+    }
+  }
+
+  private static void writeIndex(JarOutputStream jos, byte[] index) throws IOException {
+    JarEntry je = new JarEntry(ClassPathIndex.NAME);
+    je.setMethod(ZipEntry.STORED);
+    je.setSize(index.length);
+    CRC32 crc = new CRC32();
+    crc.update(index);
+    je.setCrc(crc.getValue());
+    jos.putNextEntry(je);
+    jos.write(index);
+  }
+
+  private static void writeJar(Path path, String... entries) throws IOException {
+    try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(path))) {
+      for (String entry : entries) {
+        jos.putNextEntry(new JarEntry(entry));
+        jos.write(new byte[] {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe});
+      }
+    }
+  }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.binder;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.turbine.binder.bound.HeaderBoundClass;
+import com.google.turbine.binder.env.Env;
+import com.google.turbine.binder.env.SimpleEnv;
+import com.google.turbine.binder.sym.ClassSymbol;
+import com.google.turbine.binder.sym.TyVarSymbol;
+import com.google.turbine.model.TurbineFlag;
+import com.google.turbine.model.TurbineTyKind;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ResolveTest {
+
+  private static final ClassSymbol A = new ClassSymbol("p/A");
+  private static final ClassSymbol I = new ClassSymbol("p/A$I");
+  private static final ClassSymbol B = new ClassSymbol("p/B");
+  private static final ClassSymbol C = new ClassSymbol("p/C");
+
+  /** A class {@code A} with a private member class {@code I}, and a subclass {@code B} of A. */
+  private static Env<ClassSymbol, HeaderBoundClass> env() {
+    SimpleEnv.Builder<ClassSymbol, HeaderBoundClass> env = SimpleEnv.builder();
+    env.put(A, new TestClass(null, TurbineFlag.ACC_PUBLIC, ImmutableMap.of("I", I), null));
+    env.put(I, new TestClass(A, TurbineFlag.ACC_PRIVATE, ImmutableMap.of(), null));
+    env.put(B, new TestClass(null, TurbineFlag.ACC_PUBLIC, ImmutableMap.of(), A));
+    env.put(C, new TestClass(null, TurbineFlag.ACC_PUBLIC, ImmutableMap.of(), null));
+    return env.build();
+  }
+
+  @Test
+  public void privateMemberVisibleToFirstOrigin() {
+    // A private member class is only visible as an inherited member from within the class itself,
+    // so the result of the first resolution mustn't be reused for other origins in the package.
+    Env<ClassSymbol, HeaderBoundClass> env = env();
+    assertThat(Resolve.resolve(env, I, B, "I")).isEqualTo(I);
+    assertThat(Resolve.resolve(env, C, B, "I")).isNull();
+  }
+
+  @Test
+  public void privateMemberInvisibleToFirstOrigin() {
+    Env<ClassSymbol, HeaderBoundClass> env = env();
+    assertThat(Resolve.resolve(env, C, B, "I")).isNull();
+    assertThat(Resolve.resolve(env, I, B, "I")).isEqualTo(I);
+  }
+
+  private static class TestClass implements HeaderBoundClass {
+
+    private final ClassSymbol owner;
+    private final int access;
+    private final ImmutableMap<String, ClassSymbol> children;
+    private final ClassSymbol superclass;
+
+    TestClass(
+        ClassSymbol owner,
+        int access,
+        ImmutableMap<String, ClassSymbol> children,
+        ClassSymbol superclass) {
+      this.owner = owner;
+      this.access = access;
+      this.children = children;
+      this.superclass = superclass;
+    }
+
+    @Override
+    public TurbineTyKind kind() {
+      return TurbineTyKind.CLASS;
+    }
+
+    @Override
+    public ClassSymbol owner() {
+      return owner;
+    }
+
+    @Override
+    public int access() {
+      return access;
+    }
+
+    @Override
+    public ImmutableMap<String, ClassSymbol> children() {
+      return children;
+    }
+
+    @Override
+    public ClassSymbol superclass() {
+      return superclass;
+    }
+
+    @Override
+    public ImmutableList<ClassSymbol> interfaces() {
+      return ImmutableList.of();
+    }
+
+    @Override
+    public ImmutableMap<String, TyVarSymbol> typeParameters() {
+      return ImmutableMap.of();
+    }
+  }
+}
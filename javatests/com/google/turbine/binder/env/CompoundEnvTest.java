@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.binder.env;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.turbine.binder.sym.ClassSymbol;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CompoundEnvTest {
+
+  private static final ClassSymbol A = new ClassSymbol("a");
+  private static final ClassSymbol B = new ClassSymbol("b");
+  private static final ClassSymbol C = new ClassSymbol("c");
+  private static final ClassSymbol D = new ClassSymbol("d");
+
+  @Test
+  public void precedence() {
+    Env<ClassSymbol, String> first = new SimpleEnv<>(ImmutableMap.of(A, "a1", B, "b1"));
+    Env<ClassSymbol, String> second = new SimpleEnv<>(ImmutableMap.of(A, "a2", C, "c2"));
+    Env<ClassSymbol, String> third = new SimpleEnv<>(ImmutableMap.of(A, "a3", D, "d3"));
+
+    // the most recently appended env wins
+    CompoundEnv<ClassSymbol, String> env =
+        CompoundEnv.<ClassSymbol, String>of(third).append(second).append(first);
+    assertThat(env.get(A)).isEqualTo("a1");
+    assertThat(env.get(B)).isEqualTo("b1");
+    assertThat(env.get(C)).isEqualTo("c2");
+    assertThat(env.get(D)).isEqualTo("d3");
+    assertThat(env.get(new ClassSymbol("e"))).isNull();
+
+    // appending a compound env is the same as appending its envs in order
+    CompoundEnv<ClassSymbol, String> nested =
+        CompoundEnv.<ClassSymbol, String>of(third)
+            .append(CompoundEnv.<ClassSymbol, String>of(second).append(first));
+    for (ClassSymbol sym : new ClassSymbol[] {A, B, C, D}) {
+      assertThat(nested.get(sym)).isEqualTo(env.get(sym));
+    }
+  }
+
+  @Test
+  public void freeze() {
+    AtomicInteger lookups = new AtomicInteger();
+    Env<ClassSymbol, String> counting =
+        new Env<ClassSymbol, String>() {
+          @Override
+          public String get(ClassSymbol sym) {
+            lookups.incrementAndGet();
+            return sym.equals(A) ? "a" : null;
+          }
+        };
+    CompoundEnv<ClassSymbol, String> frozen =
+        CompoundEnv.<ClassSymbol, String>of(counting).freeze();
+    for (int i = 0; i < 3; i++) {
+      assertThat(frozen.get(A)).isEqualTo("a");
+      assertThat(frozen.get(B)).isNull();
+    }
+    assertThat(lookups.get()).isEqualTo(2);
+
+    // frozen chains keep their cache when they are appended to
+    CompoundEnv<ClassSymbol, String> env =
+        CompoundEnv.<ClassSymbol, String>of(frozen)
+            .append(new SimpleEnv<>(ImmutableMap.of(C, "c")));
+    assertThat(env.get(A)).isEqualTo("a");
+    assertThat(env.get(B)).isNull();
+    assertThat(env.get(C)).isEqualTo("c");
+    assertThat(lookups.get()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.binder.env;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.turbine.binder.env.LazyEnv.Completer;
+import com.google.turbine.binder.env.LazyEnv.LazyBindingError;
+import com.google.turbine.binder.sym.ClassSymbol;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LazyEnvTest {
+
+  private static final ClassSymbol A = new ClassSymbol("a");
+  private static final ClassSymbol B = new ClassSymbol("b");
+  private static final ClassSymbol C = new ClassSymbol("c");
+
+  private static LazyEnv<ClassSymbol, String, String> lazyEnv(
+      ImmutableMap<ClassSymbol, Completer<ClassSymbol, String, String>> completers) {
+    return new LazyEnv<>(completers, SimpleEnv.<ClassSymbol, String>builder().build());
+  }
+
+  @Test
+  public void recursive() {
+    LazyEnv<ClassSymbol, String, String> env =
+        lazyEnv(
+            ImmutableMap.of(
+                A, (e, k) -> "a" + e.get(B),
+                B, (e, k) -> "b" + e.get(C),
+                C, (e, k) -> "c"));
+    assertThat(env.get(A)).isEqualTo("abc");
+    assertThat(env.get(new ClassSymbol("d"))).isNull();
+  }
+
+  @Test
+  public void cycle() {
+    LazyEnv<ClassSymbol, String, String> env =
+        lazyEnv(
+            ImmutableMap.of(
+                A, (e, k) -> "a" + e.get(B),
+                B, (e, k) -> "b" + e.get(A)));
+    try {
+      env.get(A);
+      fail();
+    } catch (LazyBindingError e) {
+      assertThat(e).hasMessageThat().isEqualTo("a -> b -> a");
+    }
+  }
+
+  @Test
+  public void concurrentCompletion() throws Exception {
+    AtomicInteger completions = new AtomicInteger();
+    LazyEnv<ClassSymbol, String, String> env =
+        lazyEnv(
+            ImmutableMap.of(
+                A,
+                (e, k) -> {
+                  completions.incrementAndGet();
+                  return "a" + e.get(B) + e.get(C);
+                },
+                B,
+                (e, k) -> {
+                  completions.incrementAndGet();
+                  return "b" + e.get(C);
+                },
+                C,
+                (e, k) -> {
+                  completions.incrementAndGet();
+                  return "c";
+                }));
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        ClassSymbol sym = ImmutableList.of(A, B, C).get(i % 3);
+        futures.add(executor.submit(() -> env.get(sym)));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        assertThat(futures.get(i).get()).isEqualTo(ImmutableList.of("abcc", "bc", "c").get(i % 3));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(completions.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void crossThreadCycle() throws Exception {
+    // Start completing both symbols on separate threads before either asks for the other, so each
+    // one ends up waiting on a completion owned by the other thread.
+    CountDownLatch started = new CountDownLatch(2);
+    Completer<ClassSymbol, String, String> completer =
+        (e, k) -> {
+          started.countDown();
+          Uninterruptibles.awaitUninterruptibly(started);
+          try {
+            return k.binaryName() + e.get(k.equals(A) ? B : A);
+          } catch (LazyBindingError expected) {
+            return k.binaryName();
+          }
+        };
+    LazyEnv<ClassSymbol, String, String> env = lazyEnv(ImmutableMap.of(A, completer, B, completer));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<String> a = executor.submit(() -> env.get(A));
+      Future<String> b = executor.submit(() -> env.get(B));
+      // Exactly one of the threads sees the cycle, and the other one uses its result.
+      assertThat(ImmutableList.of(a.get(10, TimeUnit.SECONDS), b.get(10, TimeUnit.SECONDS)))
+          .isAnyOf(ImmutableList.of("ab", "b"), ImmutableList.of("a", "ba"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
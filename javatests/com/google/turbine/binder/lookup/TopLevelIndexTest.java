@@ -21,6 +21,8 @@ import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableList;
 import com.google.turbine.binder.sym.ClassSymbol;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -74,6 +76,29 @@ public class TopLevelIndexTest {
     assertThat(scope.lookup(new LookupKey(ImmutableList.of("NoSuch")))).isNull();
   }
 
+  @Test
+  public void manyClasses() {
+    List<ClassSymbol> syms = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      syms.add(new ClassSymbol("p/C" + i));
+      syms.add(new ClassSymbol("p/q" + i + "/D"));
+    }
+    TopLevelIndex index = SimpleTopLevelIndex.of(syms);
+
+    Scope scope = index.lookupPackage(ImmutableList.of("p"));
+    for (int i = 0; i < 100; i++) {
+      assertThat(scope.lookup(new LookupKey(ImmutableList.of("C" + i))).sym())
+          .isEqualTo(new ClassSymbol("p/C" + i));
+      assertThat(scope.lookup(new LookupKey(ImmutableList.of("q" + i)))).isNull();
+      assertThat(
+              index.scope().lookup(new LookupKey(ImmutableList.of("p", "q" + i, "D", "E"))).sym())
+          .isEqualTo(new ClassSymbol("p/q" + i + "/D"));
+    }
+    assertThat(scope.lookup(new LookupKey(ImmutableList.of("C100")))).isNull();
+    assertThat(scope.lookup(new LookupKey(ImmutableList.of("A")))).isNull();
+    assertThat(scope.lookup(new LookupKey(ImmutableList.of("Z")))).isNull();
+  }
+
   @Test
   public void overrideClass() {
     {
@@ -102,6 +127,41 @@ public class TopLevelIndexTest {
     }
   }
 
+  @Test
+  public void compound() {
+    TopLevelIndex index =
+        CompoundTopLevelIndex.of(
+            SimpleTopLevelIndex.of(
+                ImmutableList.of(new ClassSymbol("a/b/C"), new ClassSymbol("p/One"))),
+            SimpleTopLevelIndex.of(
+                ImmutableList.of(
+                    new ClassSymbol("a/b"), new ClassSymbol("p/One"), new ClassSymbol("p/Two"))));
+
+    // Look up each name twice, to check that remembered results are the same.
+    for (int i = 0; i < 2; i++) {
+      // a match anywhere in the first index wins over a shorter match in the second
+      LookupResult result = index.scope().lookup(new LookupKey(ImmutableList.of("a", "b", "C")));
+      assertThat(result.sym()).isEqualTo(new ClassSymbol("a/b/C"));
+      assertThat(result.remaining()).isEmpty();
+
+      result = index.scope().lookup(new LookupKey(ImmutableList.of("a", "b", "D")));
+      assertThat(result.sym()).isEqualTo(new ClassSymbol("a/b"));
+      assertThat(result.remaining()).containsExactly("D");
+
+      assertThat(index.scope().lookup(new LookupKey(ImmutableList.of("a", "x")))).isNull();
+
+      Scope scope = index.lookupPackage(ImmutableList.of("p"));
+      result = scope.lookup(new LookupKey(ImmutableList.of("Two", "Inner")));
+      assertThat(result.sym()).isEqualTo(new ClassSymbol("p/Two"));
+      assertThat(result.remaining()).containsExactly("Inner");
+      assertThat(scope.lookup(new LookupKey(ImmutableList.of("One"))).sym())
+          .isEqualTo(new ClassSymbol("p/One"));
+      assertThat(scope.lookup(new LookupKey(ImmutableList.of("Three")))).isNull();
+
+      assertThat(index.lookupPackage(ImmutableList.of("q"))).isNull();
+    }
+  }
+
   @Test
   public void emptyLookup() {
     LookupKey key = new LookupKey(ImmutableList.of("java", "util", "List"));
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.binder.sym;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ClassSymbolTest {
+
+  @Test
+  public void interned() {
+    // Build the name at runtime, so it isn't the same instance as the string literal.
+    ClassSymbol a = new ClassSymbol(new StringBuilder("java/util/").append("List").toString());
+    ClassSymbol b = new ClassSymbol("java/util/List");
+    ClassSymbol c = new ClassSymbol("java/util/Map");
+
+    assertThat(a).isEqualTo(b);
+    assertThat(a.hashCode()).isEqualTo(b.hashCode());
+    assertThat(a.binaryName()).isSameAs(b.binaryName());
+
+    assertThat(a).isNotEqualTo(c);
+  }
+}
@@ -30,11 +30,13 @@ import com.google.turbine.bytecode.ClassFile.ModuleInfo.RequireInfo;
 import com.google.turbine.model.Const;
 import com.google.turbine.model.TurbineConstantTypeKind;
 import com.google.turbine.model.TurbineFlag;
+import java.nio.ByteBuffer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.ModuleVisitor;
 import org.objectweb.asm.Opcodes;
 
@@ -216,6 +218,82 @@ public class ClassReaderTest {
     assertThat(b.outerClass()).isEqualTo("test/Hello$Inner");
   }
 
+  @Test
+  public void skippedSections() {
+    ClassWriter cw = new ClassWriter(0);
+    cw.visit(
+        52,
+        Opcodes.ACC_SUPER,
+        "test/Hello",
+        "Ljava/lang/Object;Ljava/lang/Comparable<Ltest/Hello;>;",
+        "java/lang/Object",
+        new String[] {"java/lang/Comparable", "java/io/Serializable"});
+    cw.visitField(Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "x", "I", null, 42).visitEnd();
+    cw.visitField(0, "y", "Ljava/util/List;", "Ljava/util/List<Ljava/lang/String;>;", null)
+        .visitEnd();
+    MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(Opcodes.ALOAD, 0);
+    mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(1, 1);
+    mv.visitEnd();
+    cw.visitMethod(Opcodes.ACC_PUBLIC, "f", "()V", null, new String[] {"java/lang/Exception"});
+    cw.visitInnerClass("test/Hello$Inner", "test/Hello", "Inner", Opcodes.ACC_STATIC);
+    byte[] bytes = cw.toByteArray();
+
+    ClassFile classFile = ClassReader.read(null, bytes);
+
+    // read the sections in a different order than they appear in the class file
+    assertThat(classFile.innerClasses()).hasSize(1);
+    assertThat(classFile.signature())
+        .isEqualTo("Ljava/lang/Object;Ljava/lang/Comparable<Ltest/Hello;>;");
+    assertThat(classFile.methods().stream().map(m -> m.name()).collect(toImmutableList()))
+        .containsExactly("<init>", "f")
+        .inOrder();
+    assertThat(classFile.methods().get(1).exceptions()).containsExactly("java/lang/Exception");
+    assertThat(classFile.fields().stream().map(f -> f.name()).collect(toImmutableList()))
+        .containsExactly("x", "y")
+        .inOrder();
+    assertThat(((Const.IntValue) classFile.fields().get(0).value()).value()).isEqualTo(42);
+    assertThat(classFile.interfaces())
+        .containsExactly("java/lang/Comparable", "java/io/Serializable")
+        .inOrder();
+    assertThat(classFile.annotations()).isEmpty();
+  }
+
+  @Test
+  public void header() {
+    ClassWriter cw = new ClassWriter(0);
+    cw.visit(
+        52,
+        Opcodes.ACC_SUPER,
+        "test/Hello$Inner",
+        null,
+        "java/lang/Object",
+        new String[] {"java/io/Serializable"});
+    cw.visitField(0, "x", "I", null, null).visitEnd();
+    cw.visitMethod(0, "f", "()V", null, null).visitEnd();
+    cw.visitInnerClass(
+        "test/Hello$Inner", "test/Hello", "Inner", Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE);
+    cw.visitInnerClass("test/Hello$Inner$A", "test/Hello$Inner", "A", 0);
+    cw.visitInnerClass("test/Hello$Inner$B", "test/Hello$Inner", "B", 0);
+    cw.visitInnerClass("test/Hello$Other", "test/Hello", "Other", 0);
+    byte[] bytes = cw.toByteArray();
+
+    ClassHeader header = ClassReader.readHeader(null, ByteBuffer.wrap(bytes));
+
+    assertThat(header.access()).isEqualTo(TurbineFlag.ACC_SUPER);
+    assertThat(header.name()).isEqualTo("test/Hello$Inner");
+    assertThat(header.superName()).isEqualTo("java/lang/Object");
+    assertThat(header.interfaces()).containsExactly("java/io/Serializable");
+    assertThat(header.self().outerClass()).isEqualTo("test/Hello");
+    assertThat(header.self().access()).isEqualTo(TurbineFlag.ACC_STATIC | TurbineFlag.ACC_PRIVATE);
+    assertThat(header.children())
+        .containsExactly("A", "test/Hello$Inner$A", "B", "test/Hello$Inner$B")
+        .inOrder();
+  }
+
   @Test
   public void largeConstant() {
     String jumbo = Strings.repeat("a", Short.MAX_VALUE + 1);
@@ -228,6 +306,27 @@ public class ClassReaderTest {
     assertThat(cf.name()).isEqualTo(jumbo);
   }
 
+  @Test
+  public void byteBuffer() {
+    // exercise the one-, two- and three-byte forms of modified UTF-8, including the two-byte
+    // encoding of NUL and surrogate pairs
+    String name = "test/\u00e9\u0000\u4e2d\ud83d\ude00";
+    ClassWriter cw = new ClassWriter(0);
+    cw.visit(52, Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+    byte[] bytes = cw.toByteArray();
+
+    // read the class from the middle of a larger buffer
+    ByteBuffer buf = ByteBuffer.allocate(bytes.length + 20);
+    buf.position(10);
+    buf.put(bytes);
+    buf.position(10);
+    buf.limit(10 + bytes.length);
+
+    ClassFile cf = ClassReader.read(null, buf);
+    assertThat(cf.name()).isEqualTo(name);
+    assertThat(cf.superName()).isEqualTo("java/lang/Object");
+  }
+
   @Test
   public void v53() {
     ClassWriter cw = new ClassWriter(0);
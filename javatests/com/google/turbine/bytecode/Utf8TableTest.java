@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class Utf8TableTest {
+
+  @Test
+  public void shared() {
+    ByteBuffer a = ByteBuffer.wrap("xxjava/lang/Object".getBytes(UTF_8));
+    ByteBuffer b = ByteBuffer.wrap("java/lang/Objectyy".getBytes(UTF_8));
+
+    String first = Utf8Table.get(a, 2, 16);
+    String second = Utf8Table.get(b, 0, 16);
+
+    assertThat(first).isEqualTo("java/lang/Object");
+    assertThat(second).isSameAs(first);
+  }
+
+  @Test
+  public void distinct() {
+    ByteBuffer buf = ByteBuffer.wrap("java/lang/Stringjava/lang/Strinh".getBytes(UTF_8));
+
+    assertThat(Utf8Table.get(buf, 0, 16)).isEqualTo("java/lang/String");
+    assertThat(Utf8Table.get(buf, 16, 16)).isEqualTo("java/lang/Strinh");
+    assertThat(Utf8Table.get(buf, 0, 16)).isEqualTo("java/lang/String");
+  }
+
+  @Test
+  public void longString() {
+    String value = Strings.repeat("a", 1000);
+    ByteBuffer buf = ByteBuffer.wrap(value.getBytes(UTF_8));
+
+    assertThat(Utf8Table.get(buf, 0, 1000)).isEqualTo(value);
+  }
+
+  @Test
+  public void rawEquals() {
+    ByteBuffer buf = ByteBuffer.wrap("xSignaturex".getBytes(UTF_8));
+
+    assertThat(Utf8Table.equals(buf, 1, 9, "Signature".getBytes(UTF_8))).isTrue();
+    assertThat(Utf8Table.equals(buf, 1, 9, "Signaturf".getBytes(UTF_8))).isFalse();
+    assertThat(Utf8Table.equals(buf, 1, 10, "Signature".getBytes(UTF_8))).isFalse();
+  }
+}
@@ -41,6 +41,7 @@ import com.google.turbine.model.TurbineFlag;
 import com.google.turbine.model.TurbineTyKind;
 import com.google.turbine.parse.Parser;
 import com.google.turbine.testing.AsmUtils;
+import com.google.turbine.tree.Tree;
 import com.google.turbine.type.Type;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -50,6 +51,8 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import org.junit.Rule;
@@ -480,6 +483,43 @@ public class LowerTest {
         .isEqualTo(IntegrationTestSupport.dump(IntegrationTestSupport.canonicalize(expected)));
   }
 
+  @Test
+  public void parallelLowering() throws IOException {
+    ImmutableList.Builder<Tree.CompUnit> units = ImmutableList.builder();
+    for (int i = 0; i < 20; i++) {
+      units.add(
+          Parser.parse(
+              String.format(
+                  "class A%d<T extends A%d<T>> extends java.util.ArrayList<T> {"
+                      + "  class I { T t; }"
+                      + "}",
+                  i, (i + 1) % 20)));
+    }
+    BindingResult bound =
+        Binder.bind(
+            units.build(),
+            ClassPathBinder.bindClasspath(ImmutableList.of()),
+            TURBINE_BOOTCLASSPATH,
+            /* moduleVersion=*/ Optional.absent());
+
+    Lower.Lowered serial = Lower.lowerAll(bound.units(), bound.modules(), bound.classPathEnv());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    Lower.Lowered parallel;
+    try {
+      parallel = Lower.lowerAll(bound.units(), bound.modules(), bound.classPathEnv(), executor);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(parallel.bytes().keySet())
+        .containsExactlyElementsIn(serial.bytes().keySet())
+        .inOrder();
+    for (Map.Entry<String, byte[]> entry : serial.bytes().entrySet()) {
+      assertThat(parallel.bytes().get(entry.getKey())).isEqualTo(entry.getValue());
+    }
+    assertThat(parallel.symbols()).containsExactlyElementsIn(serial.symbols()).inOrder();
+  }
+
   static String lines(String... lines) {
     return Joiner.on("\n").join(lines);
   }
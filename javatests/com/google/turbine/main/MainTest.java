@@ -23,13 +23,24 @@ import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteStreams;
+import com.google.turbine.binder.ClassPath;
+import com.google.turbine.binder.ClassPathBinder;
+import com.google.turbine.binder.ClassPathIndex;
+import com.google.turbine.binder.sym.ClassSymbol;
 import com.google.turbine.diag.TurbineError;
 import com.google.turbine.options.TurbineOptions;
+import com.google.turbine.proto.WorkerProtocol.WorkRequest;
+import com.google.turbine.proto.WorkerProtocol.WorkResponse;
+import com.google.turbine.zip.Zip;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -229,4 +240,183 @@ public class MainTest {
       assertThat(expected).hasMessageThat().contains("java.lang");
     }
   }
+
+  @Test
+  public void parallelParse() throws IOException {
+    Path srcjar = temporaryFolder.newFile("lib.srcjar").toPath();
+    ImmutableList.Builder<String> sources = ImmutableList.builder();
+    try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(srcjar))) {
+      for (int i = 0; i < 50; i++) {
+        jos.putNextEntry(new JarEntry("p/A" + i + ".java"));
+        jos.write(String.format("package p; class A%d {}", i).getBytes(UTF_8));
+        Path src = temporaryFolder.newFile("B" + i + ".java").toPath();
+        Files.write(src, String.format("package q; class B%d {}", i).getBytes(UTF_8));
+        sources.add(src.toString());
+      }
+    }
+
+    Path serial = temporaryFolder.newFile("serial.jar").toPath();
+    Path parallel = temporaryFolder.newFile("parallel.jar").toPath();
+    for (Path output : ImmutableList.of(serial, parallel)) {
+      boolean ok =
+          Main.compile(
+              optionsWithBootclasspath()
+                  .addSources(sources.build())
+                  .setSourceJars(ImmutableList.of(srcjar.toString()))
+                  .setThreads(output.equals(parallel) ? 4 : 1)
+                  .setOutput(output.toString())
+                  .build());
+      assertThat(ok).isTrue();
+    }
+
+    Map<String, byte[]> data = readJar(parallel);
+    assertThat(data).hasSize(100);
+    assertThat(data.keySet()).containsExactlyElementsIn(readJar(serial).keySet()).inOrder();
+  }
+
+  @Test
+  public void profile() throws IOException {
+    Path src = temporaryFolder.newFile("Test.java").toPath();
+    Files.write(src, "public class Test {}".getBytes(UTF_8));
+    Path output = temporaryFolder.newFile("output.jar").toPath();
+    Path profile = temporaryFolder.newFile("profile.json").toPath();
+
+    boolean ok =
+        Main.compile(
+            optionsWithBootclasspath()
+                .addSources(ImmutableList.of(src.toString()))
+                .setOutput(output.toString())
+                .setProfile(profile.toString())
+                .build());
+    assertThat(ok).isTrue();
+
+    String trace = new String(Files.readAllBytes(profile), UTF_8);
+    assertThat(trace).startsWith("{\"traceEvents\":[");
+    assertThat(trace).contains("\"name\":\"bindTypes\"");
+    assertThat(trace).contains("\"name\":\"lower\"");
+    assertThat(trace).contains("\"name\":" + "\"parse " + src + "\"");
+  }
+
+  @Test
+  public void profileWriteFailure() throws IOException {
+    Path src = temporaryFolder.newFile("Test.java").toPath();
+    Files.write(src, "public class Test extends NoSuch {}".getBytes(UTF_8));
+    Path output = temporaryFolder.newFile("output.jar").toPath();
+    // the trace can't be written to a directory
+    Path profile = temporaryFolder.newFolder("profile.json").toPath();
+
+    try {
+      Main.compile(
+          optionsWithBootclasspath()
+              .addSources(ImmutableList.of(src.toString()))
+              .setOutput(output.toString())
+              .setProfile(profile.toString())
+              .build());
+      fail();
+    } catch (TurbineError e) {
+      assertThat(e).hasMessageThat().contains("symbol not found NoSuch");
+      assertThat(e.getSuppressed()).hasLength(1);
+      assertThat(e.getSuppressed()[0]).isInstanceOf(IOException.class);
+    }
+  }
+
+  @Test
+  public void classPathIndex() throws IOException {
+    Path src = temporaryFolder.newFile("Test.java").toPath();
+    Files.write(src, "package p; public class Test { class Inner {} }".getBytes(UTF_8));
+    Path output = temporaryFolder.newFile("output.jar").toPath();
+
+    boolean ok =
+        Main.compile(
+            optionsWithBootclasspath()
+                .addSources(ImmutableList.of(src.toString()))
+                .setTargetLabel("//foo:foo")
+                .setOutput(output.toString())
+                .setWriteClassPathIndex(true)
+                .build());
+    assertThat(ok).isTrue();
+
+    assertThat(readJar(output).keySet())
+        .containsExactly(
+            "p/Test$Inner.class",
+            "p/Test.class",
+            "META-INF/",
+            "META-INF/MANIFEST.MF",
+            ClassPathIndex.NAME)
+        .inOrder();
+
+    try (Zip.ZipIterable zip = new Zip.ZipIterable(output)) {
+      Zip.Entry index = null;
+      for (Zip.Entry entry : zip) {
+        index = entry;
+      }
+      assertThat(index.name()).isEqualTo(ClassPathIndex.NAME);
+      assertThat(ClassPathIndex.read(index.dataBuffer(), zip.centralDirectorySize())).isNotNull();
+      // the index written by Main is exactly the index computed by scanning the jar
+      assertThat(index.data()).isEqualTo(ClassPathIndex.scan(zip).toByteArray());
+    }
+
+    ClassPath classPath = ClassPathBinder.bindClasspath(ImmutableList.of(output));
+    assertThat(classPath.env().get(new ClassSymbol("p/Test"))).isNotNull();
+    assertThat(classPath.env().get(new ClassSymbol("p/Test$Inner"))).isNotNull();
+  }
+
+  @Test
+  public void persistentWorker() throws IOException {
+    Path src = temporaryFolder.newFolder().toPath().resolve("java/lang/Object.java");
+    Files.createDirectories(src.getParent());
+    Files.write(src, "package java.lang; public class Object {}".getBytes(UTF_8));
+    Path bad = temporaryFolder.newFile("Bad.java").toPath();
+    Files.write(bad, "package java.lang; public class Bad extends NoSuch {}".getBytes(UTF_8));
+
+    ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    for (int i = 0; i < 2; i++) {
+      workRequest(i, "--sources", src.toString(), "--output", output(i).toString())
+          .writeDelimitedTo(requests);
+    }
+    workRequest(2, "--sources", bad.toString(), "--output", output(2).toString())
+        .writeDelimitedTo(requests);
+    workRequest(
+            3,
+            "--sources",
+            src.toString(),
+            "--output",
+            output(3).toString(),
+            "--processors",
+            "p.Processor")
+        .writeDelimitedTo(requests);
+
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+    Main.runPersistentWorker(new ByteArrayInputStream(requests.toByteArray()), responses);
+
+    InputStream in = new ByteArrayInputStream(responses.toByteArray());
+    for (int i = 0; i < 2; i++) {
+      WorkResponse response = WorkResponse.parseDelimitedFrom(in);
+      assertThat(response.getRequestId()).isEqualTo(i);
+      assertThat(response.getExitCode()).isEqualTo(0);
+      assertThat(response.getOutput()).isEmpty();
+      assertThat(readJar(output(i)).keySet()).containsExactly("java/lang/Object.class");
+    }
+    WorkResponse response = WorkResponse.parseDelimitedFrom(in);
+    assertThat(response.getRequestId()).isEqualTo(2);
+    assertThat(response.getExitCode()).isEqualTo(1);
+    assertThat(response.getOutput()).contains("error: symbol not found NoSuch");
+    response = WorkResponse.parseDelimitedFrom(in);
+    assertThat(response.getRequestId()).isEqualTo(3);
+    assertThat(response.getExitCode()).isEqualTo(1);
+    assertThat(response.getOutput()).contains("annotation processing is not supported");
+    assertThat(Files.exists(output(3))).isFalse();
+    assertThat(WorkResponse.parseDelimitedFrom(in)).isNull();
+  }
+
+  private Path output(int i) {
+    return temporaryFolder.getRoot().toPath().resolve("output" + i + ".jar");
+  }
+
+  private static WorkRequest workRequest(int requestId, String... args) {
+    return WorkRequest.newBuilder()
+        .addAllArguments(Arrays.asList(args))
+        .setRequestId(requestId)
+        .build();
+  }
 }
@@ -346,4 +346,44 @@ public class TurbineOptionsTest {
         .containsExactly("--release", "8", "--release", "7", "--release")
         .inOrder();
   }
+
+  @Test
+  public void threads() throws Exception {
+    TurbineOptions options =
+        TurbineOptionsParser.parse(Iterables.concat(BASE_ARGS, Arrays.asList("--threads", "4")));
+    assertThat(options.threads()).isEqualTo(4);
+  }
+
+  @Test
+  public void threadsDefault() throws Exception {
+    TurbineOptions options = TurbineOptionsParser.parse(BASE_ARGS);
+    assertThat(options.threads()).isEqualTo(1);
+  }
+
+  @Test
+  public void invalidThreads() throws Exception {
+    try {
+      TurbineOptionsParser.parse(Iterables.concat(BASE_ARGS, Arrays.asList("--threads", "0")));
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessageThat().contains("threads must be positive");
+    }
+  }
+
+  @Test
+  public void profile() throws Exception {
+    TurbineOptions options =
+        TurbineOptionsParser.parse(
+            Iterables.concat(BASE_ARGS, Arrays.asList("--profile", "/tmp/profile.json")));
+    assertThat(options.profile()).hasValue("/tmp/profile.json");
+    assertThat(TurbineOptionsParser.parse(BASE_ARGS).profile()).isAbsent();
+  }
+
+  @Test
+  public void classPathIndex() throws Exception {
+    TurbineOptions options =
+        TurbineOptionsParser.parse(Iterables.concat(BASE_ARGS, Arrays.asList("--classpath_index")));
+    assertThat(options.writeClassPathIndex()).isTrue();
+    assertThat(TurbineOptionsParser.parse(BASE_ARGS).writeClassPathIndex()).isFalse();
+  }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.turbine.types;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.turbine.testing.TestClassPaths.TURBINE_BOOTCLASSPATH;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.turbine.binder.Binder;
+import com.google.turbine.binder.Binder.BindingResult;
+import com.google.turbine.binder.ClassPathBinder;
+import com.google.turbine.binder.bound.TypeBoundClass;
+import com.google.turbine.binder.env.CompoundEnv;
+import com.google.turbine.binder.env.Env;
+import com.google.turbine.binder.env.SimpleEnv;
+import com.google.turbine.binder.sym.ClassSymbol;
+import com.google.turbine.parse.Parser;
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CanonicalizeTest {
+
+  @Test
+  public void isSubclass() throws Exception {
+    BindingResult bound =
+        Binder.bind(
+            ImmutableList.of(
+                Parser.parse(
+                    Joiner.on('\n')
+                        .join(
+                            "package p;",
+                            "interface I {}",
+                            "class A {}",
+                            "class B extends A implements I {}"))),
+            ClassPathBinder.bindClasspath(Collections.emptyList()),
+            TURBINE_BOOTCLASSPATH,
+            /* moduleVersion=*/ Optional.absent());
+    Env<ClassSymbol, TypeBoundClass> env =
+        CompoundEnv.<ClassSymbol, TypeBoundClass>of(bound.classPathEnv())
+            .append(new SimpleEnv<>(bound.units()));
+
+    ClassSymbol a = new ClassSymbol("p/A");
+    ClassSymbol b = new ClassSymbol("p/B");
+    ClassSymbol i = new ClassSymbol("p/I");
+
+    assertThat(Canonicalize.isSubclass(env, b, a)).isTrue();
+    assertThat(Canonicalize.isSubclass(env, b, ClassSymbol.OBJECT)).isTrue();
+    assertThat(Canonicalize.isSubclass(env, b, b)).isTrue();
+    // interfaces aren't part of the cached superclass chain
+    assertThat(Canonicalize.isSubclass(env, b, i)).isFalse();
+    assertThat(Canonicalize.isSubclass(env, a, b)).isFalse();
+  }
+}
@@ -25,18 +25,22 @@ import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Random;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
 import org.junit.Rule;
@@ -75,6 +79,23 @@ public class ZipTest {
     assertThat(actual(path)).isEqualTo(expected(path));
   }
 
+  @Test
+  public void compressionSizes() throws IOException {
+    Path path = temporaryFolder.newFile("test.jar").toPath();
+    Random random = new Random(42);
+    try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(path))) {
+      for (int size : new int[] {0, 1, 1 << 10, 1 << 20}) {
+        byte[] bytes = new byte[size];
+        // mix compressible and incompressible data
+        random.nextBytes(bytes);
+        Arrays.fill(bytes, 0, size / 2, (byte) 'a');
+        jos.putNextEntry(new JarEntry("entry" + size));
+        jos.write(bytes);
+      }
+    }
+    assertThat(actual(path)).isEqualTo(expected(path));
+  }
+
   private void testEntries(int entries) throws IOException {
     Path path = temporaryFolder.newFile("test.jar").toPath();
     try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(path))) {
@@ -121,6 +142,67 @@ public class ZipTest {
     return result;
   }
 
+  @Test
+  public void cursor() throws Exception {
+    Path path = temporaryFolder.newFile("test.jar").toPath();
+    try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(path))) {
+      createEntry(zos, "a/b/C.class", "C".getBytes(UTF_8));
+      createEntry(zos, "a/b/C.java", "java".getBytes(UTF_8));
+      createEntry(zos, "\u00e9/D.class", "D".getBytes(UTF_8));
+    }
+    Map<String, String> result = new LinkedHashMap<>();
+    try (Zip.ZipIterable zip = new Zip.ZipIterable(path)) {
+      Zip.Cursor cursor = zip.cursor();
+      while (cursor.next()) {
+        if (!cursor.nameEndsWith(".class".getBytes(UTF_8))) {
+          continue;
+        }
+        int idx = cursor.nameLastIndexOf('/');
+        String name = cursor.name(0, idx);
+        Zip.Entry entry = zip.entry(cursor.cdOffset());
+        assertThat(entry.name()).isEqualTo(cursor.name());
+        result.put(name, new String(entry.data(), UTF_8));
+      }
+    }
+    assertThat(result).containsExactly("a/b", "C", "\u00e9", "D").inOrder();
+  }
+
+  @Test
+  public void readAfterClose() throws Exception {
+    Path path = temporaryFolder.newFile("test.jar").toPath();
+    try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(path))) {
+      createEntry(zos, "hello", "world".getBytes(UTF_8));
+    }
+    Zip.Entry entry;
+    try (Zip.ZipIterable zip = new Zip.ZipIterable(path)) {
+      entry = zip.iterator().next();
+    }
+    // the archive is mapped once, and doesn't hold on to its file channel
+    assertThat(new String(entry.data(), UTF_8)).isEqualTo("world");
+  }
+
+  @Test
+  public void dataBuffer() throws Exception {
+    Path path = temporaryFolder.newFile("test.jar").toPath();
+    try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(path))) {
+      createEntry(zos, "stored", "hello".getBytes(UTF_8));
+      zos.putNextEntry(new ZipEntry("deflated"));
+      zos.write("world".getBytes(UTF_8));
+    }
+    Map<String, String> result = new LinkedHashMap<>();
+    try (Zip.ZipIterable zip = new Zip.ZipIterable(path)) {
+      for (Zip.Entry entry : zip) {
+        ByteBuffer buf = entry.dataBuffer();
+        assertThat(buf.isReadOnly()).isTrue();
+        assertThat(buf.position()).isEqualTo(0);
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        result.put(entry.name(), new String(bytes, UTF_8));
+      }
+    }
+    assertThat(result).containsExactly("stored", "hello", "deflated", "world").inOrder();
+  }
+
   @Test
   public void attributes() throws Exception {
     Path path = temporaryFolder.newFile("test.jar").toPath();